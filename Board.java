@@ -3,29 +3,93 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.io.File;
 import java.io.IOException;
-import java.io.Writer;
+import java.util.Random;
 
 import javax.swing.*;
 
 /**
  * Board
  * 
- * A game board made up of Pieces that the users interact with in order to play the game.
+ * A game board made up of Pieces that the users interact with in order to play the game. Board is
+ * Scrollable, so large boards can be put in a JScrollPane; only the Pieces that are visible are
+ * drawn, and holding control while using the mouse wheel zooms in and out. The bombs left
+ * counter, status, and timer are drawn by a separate component (see getHud()) so that they stay
+ * in place while the board scrolls.
  */
 @SuppressWarnings("serial")
-public class Board extends JPanel {
-    private int numPieces;
-    private int numBombs;
-    private Piece[][] pieces;
+public class Board extends JPanel implements Scrollable {
+    // the game rules and state; Board only handles MouseEvents and drawing
+    private final MinesweeperEngine engine;
+    
+    // finds safe Pieces and bombs for hints; told about every move
+    private final Solver solver;
+    
+    // finds the chance of each Piece being a bomb, for hints when nothing is certain; boards with
+    // more than MAX_GUESS_CELLS Pieces take too long to look through on the event thread
+    private final ProbabilityEngine probabilities;
+    public static final int MAX_GUESS_CELLS = 1 << 22;
+    
+    // the Piece last given as a hint, outlined until the next move, or -1, and its outline color;
+    // or a message shown in the status instead until the next move, or null
+    private int hintCell = -1;
+    private Color hintColor;
+    private String hintMessage;
+    
+    // the bombs left counter, status and timer
+    private final Hud hud = new Hud();
+    
+    // position of the top left corner of the first Piece, found with getPositions()
+    private int originX;
+    private int originY;
+    
+    // size of each Piece in pixels, which changes when zooming
+    private int cellSize = Piece.SIZE;
+    public static final int MIN_CELL_SIZE = 5;
+    public static final int MAX_CELL_SIZE = 60;
+    
+    // space around the Pieces
+    private static final int MARGIN = 20;
+    
+    // largest area a scroll pane should show the board in before scrolling
+    private static final int MAX_VIEWPORT_WIDTH = 800;
+    private static final int MAX_VIEWPORT_HEIGHT = 600;
     
     private char level = 'B';
-    private String status = "";
-    private boolean gameOver = false;
+    
+    // true if every board should be solvable without guessing; see setNoGuess(). If no such board
+    // was ready, an ordinary one is played and the status says it may need guessing.
+    private boolean noGuess;
+    private boolean mayNeedGuessing;
+    
+    // the Piece the current game's bombs were placed around before the first move, or -1
+    private int layoutStart = -1;
+    
+    // the player's moves are recorded in a replay file in REPLAY_DIRECTORY (see Replay), started
+    // on the first move and written in the background
+    private Replay.Recorder recorder;
+    public static final String REPLAY_DIRECTORY = "replays";
+    
+    // plays the moves of a replay being shown, or null; see play()
+    private Timer playback;
+    
+    // the move array used for a single click
+    private final int[] oneMove = new int[1];
+    
+    // true once a move has been undone; the rest of the game is practice, so it is not recorded
+    // and its score does not count
+    private boolean practice;
+    
+    // won games, shared by every Board; see getLeaderboard()
+    private static Leaderboard leaderboard;
+    private static final String LEADERBOARD_FILE = "highscores.dat";
+    private static final String OLD_SCORES_FILE = "highscores.txt";
+    
+    // number of fastest games shown for each level
+    public static final int NUM_HIGH_SCORES = 5;
     
     // dimensions of surrounding board area (including around pieces)
     public static final int BOARD_WIDTH = 400;
@@ -33,8 +97,9 @@ public class Board extends JPanel {
     
     // interval for timer
     public static final int INTERVAL = 1000;
-    private int seconds = 0;
-    private boolean timeStarted = false;
+    
+    // height of the bombs left counter, status, and timer
+    private static final int HUD_HEIGHT = 21;
     
     /**
      * constructor sets Board's number of pieces (the value indicates the number of pieces on one
@@ -42,15 +107,23 @@ public class Board extends JPanel {
      * values. It also handles MouseEvents and starts the timer.
      */
     public Board(int numPieces, int numBombs) {
-        this.numPieces = numPieces;
-        this.numBombs = numBombs;
-        pieces = new Piece[numPieces][numPieces];
-        assignBombs();
+        this(numPieces, numPieces, numBombs);
+    }
+    
+    /**
+     * constructor sets Board's number of rows and columns of pieces and the number of bombs using
+     * the given values, for boards that are not square
+     */
+    public Board(int numRows, int numCols, int numBombs) {
+        engine = new MinesweeperEngine(numRows, numCols, numBombs, new Random().nextLong());
+        solver = new Solver(engine);
+        probabilities = new ProbabilityEngine(engine);
+        findOrigin();
         
         // creates border around the game board
         setBorder(BorderFactory.createLineBorder(Color.BLACK));
         
-        // timer to count the seconds since game was started
+        // timer to repaint the seconds since game was started
         final Timer timer = new Timer(INTERVAL, new ActionListener() {
             public void actionPerformed(ActionEvent e) {
                 tick();
@@ -58,60 +131,45 @@ public class Board extends JPanel {
         });
         
         // mouseAdapter checks if the user has clicked in any of the Pieces
-        // if so, the Piece's rightClicked or leftClicked is updated and the board is repainted 
+        // if so, the Piece is flagged or revealed by the engine and the board is repainted
         addMouseListener(new MouseAdapter() {
             public void mouseClicked(MouseEvent e) {
                 // start timer on first click
-                if (!timeStarted) {
+                if (!timer.isRunning()) {
                     timer.start();
-                    timeStarted = true;
                 }
-                if (!gameOver) {
+                int cell = cellAt(e.getX(), e.getY());
+                if (engine.status() == MinesweeperEngine.Status.PLAYING && cell != -1
+                        && playback == null) {
                     // check for right click (either through right click or left click + control)
                     if ((e.getButton() == MouseEvent.BUTTON1 && e.isControlDown()) ||
                          e.getButton() == MouseEvent.BUTTON3) {
-                        for (int i = 0; i < getNumPieces(); i++) {
-                            for (int j = 0; j < getNumPieces(); j++) {
-                                if (e.getX() > pieces[i][j].getX() &&
-                                    e.getX() < pieces[i][j].getX() + Piece.SIZE &&
-                                    e.getY() > pieces[i][j].getY() &&
-                                    e.getY() < pieces[i][j].getY() + Piece.SIZE &&
-                                    !pieces[i][j].getLeft()) {
-                                    if (pieces[i][j].getRight()) {
-                                        pieces[i][j].setRight(false);
-                                    } else {
-                                        pieces[i][j].setRight(true);
-                                    }
-                                    if (numClicked() == getNumBombs()) {
-                                        checkWin();
-                                    }
-                                    repaint();
-                                    if (gameOver) {
-                                        highscores();
-                                    }
-                                }
-                            }
-                        }
+                        makeMove(cell, Replay.FLAG);
+                    } else if (e.getButton() == MouseEvent.BUTTON2 || (e.getButton()
+                            == MouseEvent.BUTTON1 && engine.isRevealed(cell / getNumCols(),
+                                    cell % getNumCols()))) {
+                        // a middle click, or a click on a number, reveals its neighbours if it
+                        // has as many flags around it as its number
+                        makeMove(cell, Replay.CHORD);
                     } else if (e.getButton() == MouseEvent.BUTTON1) {
                         // check for left click
-                        for (int i = 0; i < getNumPieces(); i++) {
-                            for (int j = 0; j < getNumPieces(); j++) {
-                                if (e.getX() > pieces[i][j].getX() &&
-                                    e.getX() < pieces[i][j].getX() + Piece.SIZE &&
-                                    e.getY() > pieces[i][j].getY() &&
-                                    e.getY() < pieces[i][j].getY() + Piece.SIZE &&
-                                    !pieces[i][j].getRight()) {
-                                    pieces[i][j].setLeft(true);
-                                    if (pieces[i][j].getBomb()) {
-                                        setGameOver();
-                                        setStatus("You lose!");
-                                    } else {
-                                        getNumbers(pieces[i][j], i, j);
-                                    }
-                                    repaint();
-                                }
-                            }
-                        }
+                        makeMove(cell, Replay.REVEAL);
+                    }
+                }
+            }
+        });
+        
+        // control + mouse wheel zooms around the mouse; otherwise the wheel scrolls as usual
+        addMouseWheelListener(new MouseWheelListener() {
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                if (e.isControlDown()) {
+                    zoom(cellSize - 2 * e.getWheelRotation(), e.getX(), e.getY());
+                } else {
+                    Container scrollPane =
+                            SwingUtilities.getAncestorOfClass(JScrollPane.class, Board.this);
+                    if (scrollPane != null) {
+                        scrollPane.dispatchEvent(
+                                SwingUtilities.convertMouseEvent(Board.this, e, scrollPane));
                     }
                 }
             }
@@ -119,105 +177,425 @@ public class Board extends JPanel {
     }
     
     /**
-     * tick() advances the seconds count and repaints the timer every 1000 milliseconds, as long as
-     * the gameOver property is false
+     * makeMove(int cell, int action) flags, reveals or chords a Piece (from a click, or from a
+     * replay being played); see applyMoves()
+     * 
+     * @param int cell: the Piece (as row * numCols + col)
+     * @param int action: Replay.REVEAL, Replay.FLAG or Replay.CHORD
+     * @return boolean changed: true if the board changed
      */
-    void tick() {
-        if (!gameOver) {
-            seconds++;
-            repaint();
-        }
+    private boolean makeMove(int cell, int action) {
+        oneMove[0] = MinesweeperEngine.move(cell, action);
+        return applyMoves(oneMove, 0, 1);
+    }
+    
+    /**
+     * applyBatch(int[] moves, int n) makes many moves as one gesture (for example a bot's turn):
+     * the engine makes them together (see MinesweeperEngine.applyBatch()) and the board is
+     * repainted once, however many Pieces change
+     * 
+     * @param int[] moves: the moves, made with MinesweeperEngine.move()
+     * @param int n: the number of moves to make, from the start of the array
+     * @return boolean changed: true if the board changed
+     */
+    public boolean applyBatch(int[] moves, int n) {
+        return applyMoves(moves, 0, n);
     }
     
     /**
-     * assignBombs() randomly assigns the given number of bombs to random pieces
+     * applyMoves(int[] moves, int from, int to) makes the given moves together and repaints the
+     * smallest rectangle containing every Piece they changed; the player's moves can be undone
+     * as one and are recorded, and a won game's score is recorded as well
      */
-    public void assignBombs() {
-        boolean[][] bools = new boolean[numPieces][numPieces];
-        int counter = 0;
+    private boolean applyMoves(int[] moves, int from, int to) {
+        if (engine.status() != MinesweeperEngine.Status.PLAYING) {
+            return false;
+        }
+        clearHint();
+        if (playback == null) {
+            engine.snapshot();
+        }
+        if (engine.applyBatch(moves, from, to) == 0) {
+            if (playback == null) {
+                engine.undo();
+            }
+            return false;
+        }
         
-        // generates a random x and y position in the array
-        // checks if that location does not yet have a bomb and if so advances counter
-        while (counter < numBombs) {
-            int x = (int) (numPieces * Math.random());
-            int y = (int) (numPieces * Math.random());
-            
-            if (bools[x][y] == false) {
-                bools[x][y] = true;
-                counter++;
+        int[] cells = engine.getRevealedCells();
+        int n = engine.getNumRevealedCells();
+        solver.revealed(cells, n);
+        boolean flags = false;
+        for (int m = from; m < to; m++) {
+            if ((moves[m] & ((1 << MinesweeperEngine.ACTION_BITS) - 1)) == Replay.FLAG) {
+                solver.flagged(moves[m] >>> MinesweeperEngine.ACTION_BITS);
+                flags = true;
             }
         }
+        if (cells == null) {
+            repaintGrid();
+        } else {
+            repaintCells(cells, n, moves, from, to);
+        }
+        if (flags) {
+            hud.repaint(hud.bombsLeftArea());
+        }
         
-        // uses getPositions method to find the x and y positions for every piece
-        // fills pieces array with new Pieces with the bomb assignments
-        int[] positions = getPositions();
-        for (int i = 0; i < numPieces; i++) {
-            for (int j = 0; j < numPieces; j++) {
-                pieces[i][j] = new Piece (bools[i][j], false, false, positions[i], positions[j]);
+        if (playback == null && !practice) {
+            record(moves, from, to);
+        }
+        if (engine.status() != MinesweeperEngine.Status.PLAYING) {
+            repaintGameOver();
+            if (engine.status() == MinesweeperEngine.Status.WON && playback == null
+                    && !practice) {
+                highscores();
             }
+            stopRecording();
+        }
+        return true;
+    }
+    
+    /**
+     * record(int[] moves, int from, int to) adds moves made together to the current game's replay
+     * as one batch (so that they are played back together), starting the replay file on the first
+     * move
+     */
+    private void record(int[] moves, int from, int to) {
+        if (recorder == null) {
+            recorder = Replay.record(new File(REPLAY_DIRECTORY), level, engine, layoutStart);
+        }
+        recorder.batch(engine.elapsedNanos() / 1000000L, moves, from, to);
+    }
+    
+    /**
+     * stopRecording() finishes the current game's replay file, if there is one
+     */
+    private void stopRecording() {
+        if (recorder != null) {
+            recorder.close();
+            recorder = null;
         }
     }
     
     /**
-     * getPositions() finds the x and y positions for the given pieces
+     * undo() takes back the player's last move, even one that lost the game (see
+     * MinesweeperEngine.undo()). The rest of the game is practice: it is no longer recorded, and
+     * winning it does not record a score.
      * 
-     * @return int[] positions: a array of the range of positions for the pieces
+     * @return boolean: true if there was a move to take back
      */
-    public int[] getPositions() {
-        int pieceSize = Piece.SIZE;
-        int boardSize = numPieces * pieceSize;
-        int min = (BOARD_WIDTH / 2) - (boardSize / 2);
-        
-        // finds positions for the pieces starting from the minimum value
-        int[] positions = new int[numPieces];
-        positions[0] = min;
-        for (int i = 1; i < numPieces; i++) {
-            positions[i] = positions[i - 1] + pieceSize;
+    public boolean undo() {
+        if (playback != null || !engine.undo()) {
+            Toolkit.getDefaultToolkit().beep();
+            return false;
         }
-        
-        return positions;
+        practice = true;
+        stopRecording();
+        clearHint();
+        // the solver forgets what it found near the Pieces that changed
+        solver.undone(engine.getUndoneCells(), engine.getNumUndoneCells());
+        repaint();
+        hud.repaint();
+        return true;
     }
     
     /**
-     * getNumbers(Piece piece, int pieceI, int pieceJ) finds the number of adjacent bombs to a
-     * given Piece and then updates that Piece's numAdjacent property; this method recurses when
-     * necessary to check the number of bombs for Pieces adjacent to the original Piece
+     * play(Replay replay, double speed) shows a recorded game, making its moves at the given speed
+     * (2 for twice as fast as they were played, or Double.POSITIVE_INFINITY or 0 for all at
+     * once); clicks are ignored until the next new game
      * 
-     * @param Piece piece: the piece for which to check the number of adjacent bombs
+     * @param Replay replay: the game to show
+     * @param double speed: how many times faster than the game was played
      */
-    public void getNumbers(Piece piece, int pieceI, int pieceJ) {
-        // if the given Piece has a bomb, return
-        if (piece.getBomb()) {
+    public void play(final Replay replay, final double speed) {
+        stopGame();
+        level = replay.getLevel();
+        replay.begin(engine);
+        solver.reset();
+        hintCell = -1;
+        hintMessage = null;
+        mayNeedGuessing = false;
+        layOut();
+        if (replay.numMoves() == 0) {
             return;
         }
         
-        // if the number of adjacent bombs has already been found for this Piece, return
-        if (piece.getNumAdjacent() != -1) {
+        playback = new Timer(0, null);
+        playback.setRepeats(false);
+        playback.addActionListener(new ActionListener() {
+            private int next = 0;
+            
+            public void actionPerformed(ActionEvent e) {
+                // make every batch of moves that is due (all of them at infinite speed)
+                do {
+                    int end = replay.batchEnd(next);
+                    applyMoves(replay.getMoves(), next, end);
+                    next = end;
+                } while (next < replay.numMoves() && delay(next) == 0);
+                if (next < replay.numMoves() && playback != null) {
+                    playback.setInitialDelay(delay(next));
+                    playback.start();
+                }
+            }
+            
+            private int delay(int move) {
+                if (speed <= 0) {
+                    return 0;
+                }
+                return (int) Math.min(Integer.MAX_VALUE,
+                        (replay.time(move) - replay.time(move - 1)) / speed);
+            }
+        });
+        playback.start();
+    }
+    
+    /**
+     * tick() repaints the timer every 1000 milliseconds, as long as the game is still being played
+     */
+    void tick() {
+        if (engine.status() == MinesweeperEngine.Status.PLAYING) {
+            hud.repaint(hud.timerArea());
+        }
+    }
+    
+    /**
+     * zoom(int size, int x, int y) changes the size of the Pieces to the given size (between
+     * MIN_CELL_SIZE and MAX_CELL_SIZE), keeping the point (x, y) over the same Piece if the board
+     * is in a scroll pane
+     * 
+     * @param int size: the new size of each Piece in pixels
+     * @param int x: the x position to zoom around
+     * @param int y: the y position to zoom around
+     */
+    public void zoom(int size, int x, int y) {
+        size = Math.max(MIN_CELL_SIZE, Math.min(MAX_CELL_SIZE, size));
+        if (size == cellSize) {
             return;
         }
         
-        // check all surrounding Pieces to see if they have bombs
-        int num = 0;
-        for (int i = Math.max(0, pieceI - 1); i < Math.min(numPieces, pieceI + 2); i++) {
-            for (int j = Math.max(0, pieceJ - 1); j < Math.min(numPieces, pieceJ + 2); j++) {
-                if (pieces[i][j].getBomb()) {
-                    num++;
-                }
+        // the position of (x, y) in Pieces, which should stay under (x, y) after zooming
+        double col = (double) (x - originX) / cellSize;
+        double row = (double) (y - originY) / cellSize;
+        Rectangle visible = getVisibleRect();
+        
+        cellSize = size;
+        findOrigin();
+        revalidate();
+        repaint();
+        
+        if (getParent() instanceof JViewport) {
+            JViewport viewport = (JViewport) getParent();
+            // lay out now so that the viewport knows the new size
+            viewport.validate();
+            Dimension extent = viewport.getExtentSize();
+            Dimension view = getPreferredSize();
+            int newX = (int) (originX + col * cellSize) - (x - visible.x);
+            int newY = (int) (originY + row * cellSize) - (y - visible.y);
+            newX = Math.max(0, Math.min(newX, view.width - extent.width));
+            newY = Math.max(0, Math.min(newY, view.height - extent.height));
+            viewport.setViewPosition(new Point(newX, newY));
+        }
+    }
+    
+    /**
+     * hint() outlines a Piece that must be safe (in green) or a bomb that has not been flagged (in
+     * red), scrolling to it if needed; the outline goes away with the next move. If there is no
+     * such Piece, it outlines the Piece least likely to be a bomb instead (in orange), or on a
+     * board with more than MAX_GUESS_CELLS Pieces says in the status that there is no sure move;
+     * if the game is over, it beeps.
+     * 
+     * @return int cell: the Piece outlined (as row * numCols + col), or -1 if there was none
+     */
+    public int hint() {
+        clearHint();
+        hintCell = solver.hint();
+        if (hintCell != -1) {
+            hintColor = solver.isBomb(hintCell) ? Color.RED : Color.GREEN;
+        } else if (engine.status() == MinesweeperEngine.Status.PLAYING) {
+            if ((long) getNumRows() * getNumCols() > MAX_GUESS_CELLS) {
+                hintMessage = "No sure move";
+                hud.repaint(hud.statusArea());
+                return -1;
+            }
+            hintCell = probabilities.leastLikely();
+            hintColor = probabilities.leastLikelyChance() == 0 ? Color.GREEN : Color.ORANGE;
+        }
+        if (hintCell == -1) {
+            Toolkit.getDefaultToolkit().beep();
+        } else {
+            Rectangle bounds = new Rectangle(originX + (hintCell % getNumCols()) * cellSize,
+                    originY + (hintCell / getNumCols()) * cellSize, cellSize + 1, cellSize + 1);
+            scrollRectToVisible(bounds);
+            repaint(bounds);
+        }
+        return hintCell;
+    }
+    
+    /**
+     * getProbabilities() returns the chance that each Piece is a bomb, from what the player can
+     * see (see ProbabilityEngine)
+     * 
+     * @return double[] probabilities: the chance for each Piece (at row * getNumCols() + col), or
+     *         null if the flags do not fit the numbers
+     */
+    public double[] getProbabilities() {
+        return probabilities.probabilities();
+    }
+    
+    /**
+     * clearHint() removes the outline from the last hint
+     */
+    private void clearHint() {
+        if (hintCell != -1) {
+            repaintCell(hintCell);
+            hintCell = -1;
+        }
+        if (hintMessage != null) {
+            hintMessage = null;
+            hud.repaint(hud.statusArea());
+        }
+    }
+    
+    /**
+     * getCellSize() returns the current size of each Piece in pixels
+     * 
+     * @return int cellSize: the size of each Piece
+     */
+    public int getCellSize() {
+        return cellSize;
+    }
+    
+    /**
+     * getHud() returns the component that draws the bombs left counter, status and timer; to be
+     * added above the board (or above the scroll pane containing it) by Game
+     * 
+     * @return JComponent hud: the Board's heads-up display
+     */
+    public JComponent getHud() {
+        return hud;
+    }
+    
+    /**
+     * repaintCell(int cell) repaints only the area of the given Piece
+     * 
+     * @param int cell: the Piece's row * getNumCols() + column
+     */
+    private void repaintCell(int cell) {
+        int row = cell / getNumCols();
+        int col = cell % getNumCols();
+        repaint(originX + col * cellSize, originY + row * cellSize, cellSize + 1, cellSize + 1);
+    }
+    
+    /**
+     * repaintCells(int[] cells, int n, int[] moves, int from, int to) repaints the smallest
+     * rectangle containing the first n of the given Pieces (e.g. the Pieces revealed by a click)
+     * and the Pieces of the given moves, in one repaint
+     * 
+     * @param int[] cells: the Pieces as row * getNumCols() + column
+     * @param int n: the number of Pieces to repaint
+     * @param int[] moves: moves made with MinesweeperEngine.move()
+     * @param int from: the index of the first move
+     * @param int to: the index after the last move
+     */
+    private void repaintCells(int[] cells, int n, int[] moves, int from, int to) {
+        int numCols = getNumCols();
+        int minRow = getNumRows();
+        int maxRow = -1;
+        int minCol = numCols;
+        int maxCol = -1;
+        for (int k = 0; k < n + to - from; k++) {
+            int cell = k < n ? cells[k] : moves[from + k - n] >>> MinesweeperEngine.ACTION_BITS;
+            if (cell >= getNumRows() * numCols) {
+                continue;
             }
+            int row = cell / numCols;
+            int col = cell % numCols;
+            minRow = Math.min(minRow, row);
+            maxRow = Math.max(maxRow, row);
+            minCol = Math.min(minCol, col);
+            maxCol = Math.max(maxCol, col);
+        }
+        if (maxRow == -1) {
+            return;
         }
+        // Pieces draw their border one pixel past SIZE
+        repaint(originX + minCol * cellSize, originY + minRow * cellSize,
+                (maxCol - minCol + 1) * cellSize + 1, (maxRow - minRow + 1) * cellSize + 1);
+    }
+    
+    /**
+     * repaintGrid() repaints every Piece
+     */
+    private void repaintGrid() {
+        repaint(originX, originY, getNumCols() * cellSize + 1, getNumRows() * cellSize + 1);
+    }
+    
+    /**
+     * repaintGameOver() repaints every Piece (to show all of the bombs) and the status and timer
+     * once the game has been won or lost
+     */
+    private void repaintGameOver() {
+        repaintGrid();
+        hud.repaint();
+    }
+    
+    /**
+     * getPositions() finds the x positions for each column of pieces
+     * 
+     * @return int[] positions: a array of the range of positions for the pieces
+     */
+    public int[] getPositions() {
+        int numCols = getNumCols();
+        int pieceSize = cellSize;
         
-        // update the Piece's numAdjacent property
-        piece.setNumAdjacent(num);
+        // finds positions for the pieces starting from the minimum value
+        int[] positions = new int[numCols];
+        positions[0] = originX;
+        for (int i = 1; i < numCols; i++) {
+            positions[i] = positions[i - 1] + pieceSize;
+        }
         
-        // if none of the adjacent Pieces have bombs
-        // recurse over all of those Pieces to see if any of them have adjacent bombs
-        if (num == 0) {
-            for (int i = Math.max(0, pieceI - 1); i < Math.min(numPieces, pieceI + 2); i++) {
-                for (int j = Math.max(0, pieceJ - 1); j < Math.min(numPieces, pieceJ + 2); j++) {
-                    getNumbers(pieces[i][j], i, j);
-                }
-            }
+        return positions;
+    }
+    
+    /**
+     * findOrigin() updates the position of the first Piece after the size of the board (or of
+     * the Pieces) changes, so that the Pieces are centered in the board area
+     */
+    private void findOrigin() {
+        Dimension size = getPreferredSize();
+        int width = Math.max(size.width, getWidth());
+        int height = Math.max(size.height, getHeight());
+        originX = (width / 2) - (getNumCols() * cellSize / 2);
+        originY = (height / 2) - (getNumRows() * cellSize / 2);
+    }
+    
+    @Override
+    public void setBounds(int x, int y, int width, int height) {
+        super.setBounds(x, y, width, height);
+        // the Pieces stay centered if the board is given more room than it asked for
+        findOrigin();
+    }
+    
+    /**
+     * cellAt(int x, int y) finds which Piece contains the given point; since the Pieces are laid
+     * out in a grid of equal squares from the origin, this is done with division instead of
+     * checking every Piece
+     * 
+     * @param int x: the x position of the point (e.g. of a MouseEvent)
+     * @param int y: the y position of the point
+     * @return int cell: the Piece's row * getNumCols() + column, or -1 if no Piece contains it
+     */
+    public int cellAt(int x, int y) {
+        if (x < originX || y < originY) {
+            return -1;
+        }
+        int col = (x - originX) / cellSize;
+        int row = (y - originY) / cellSize;
+        if (row >= getNumRows() || col >= getNumCols()) {
+            return -1;
         }
+        return row * getNumCols() + col;
     }
     
     /**
@@ -226,157 +604,102 @@ public class Board extends JPanel {
      * @return int count: number of Pieces that are currently flagged (right-clicked)
      */
     public int numClicked() {
-        int count = 0;
-        
-        for (int i = 0; i < numPieces; i++) {
-            for (int j = 0; j < numPieces; j++) {
-                if (pieces[i][j].getRight()) {
-                    count++;
-                }
-            }
-        }
-        
-        return count;
+        return engine.numFlagged();
+    }
+    
+    /**
+     * getEngine() returns the MinesweeperEngine that holds this Board's game state
+     * 
+     * @return MinesweeperEngine engine: the Board's engine
+     */
+    public MinesweeperEngine getEngine() {
+        return engine;
     }
     
     /**
-     * checkWin() checks to see if all of the Pieces the user has right-clicked have bombs; if so,
-     * the user wins, and gameOver and status are updated accordingly
+     * highscores() records the time of a won game in the leaderboard, first asking for the
+     * player's name if the time is one of the NUM_HIGH_SCORES fastest for the level
      */
-    public void checkWin() {
-        int count = 0;
+    public void highscores() {
+        // only the Beginner, Intermediate and Expert levels have high scores
+        if (level != 'B' && level != 'I' && level != 'E') {
+            return;
+        }
+        Leaderboard scores = getLeaderboard();
+        if (scores == null) {
+            return;
+        }
         
-        for (int i = 0; i < numPieces; i++) {
-            for (int j = 0; j < numPieces; j++) {
-                if (pieces[i][j].getRight() && pieces[i][j].getBomb()) {
-                    count++;
-                }
+        // if user got a high score, prompt them to enter their name
+        int time = engine.elapsed();
+        String name = "";
+        if (scores.rank(level, time) < NUM_HIGH_SCORES) {
+            final JFrame winner = new JFrame("You won!");
+            winner.setSize(400, 200);
+            winner.setLocation(200, 200);
+            String message = "Congrats! You just set a new high score!\n"
+                    + "Please enter your name to record your score.";
+            name = (String)JOptionPane.showInputDialog(winner, message, "You won!",
+                    JOptionPane.PLAIN_MESSAGE, null, null, "Name");
+            if (name == null) {
+                name = "";
             }
         }
         
-        if (count == numBombs) {
-            gameOver = true;
-            status = "You win!";
+        // the replay shows which game the score is for; see Replay.verify()
+        if (recorder != null) {
+            recorder.name(name);
         }
+        
+        // written in the background, so the game does not wait for other windows' writes
+        scores.submit(level, name, time);
     }
     
-    public void highscores() {
-        try {
-            BufferedReader in = new BufferedReader(new FileReader("highscores.txt"));
-            
-            // read first line from file and add it to toOut (this will always be "High Scores")
-            String toOut = in.readLine();
-            
-            // if high scores file is empty (which it should never be), notify the user
-            if (toOut == null) {
-                System.out.println("Looks like your highscores.txt file isn't correct. Make sure "
-                        + "it follows this format:\nHigh Scores\nBeginner\n1.\n2.\n3.\n4.\n5.\n"
-                        + "Intermediate\n1.\n2.\n3.\n4.\n5.\nAdvanced\n1.\n2.\n3.\n4.\n5.");
-                in.close();
-                return;
-            }
-            
-            // find correct level scores
-            String line = in.readLine();
-            char c = line.charAt(0);
-            while (c != level) {
-                toOut = toOut + "\n" + line;
-                line = in.readLine();
-                c = line.charAt(0);
-            }
-            toOut = toOut + "\n" + line;
-            
-            // find saved scores (starting from second line) and feed them into an array
-            int[] scores = new int[5];
-            String[] names = new String[5];
-            for (int i = 0; i < 5; i++) {
-                line = in.readLine();
-                int start = line.indexOf(':');
-                if (start == -1) {
-                    scores[i] = -1;
-                    names[i] = "N/A";
-                } else {
-                    int end = line.indexOf(' ', start + 2);
-                    int score = Integer.parseInt(line.substring(start + 1, end).trim());
-                    String name = line.substring(2, start).trim();
-                    scores[i] = score;
-                    names[i] = name;
-                }
-            }
-            
-            // find if user's score is a high score, and if so update scores and names arrays
-            boolean highScore = false;
-            int compare = seconds;
-            int rank = -1;
-            int saveScore = -2;
-            String saveName = "";
-            for (int i = 0; i < 5; i++) {
-                if (scores[i] == -1 && saveScore == -2) {
-                    scores[i] = compare;
-                    names[i] = "";
-                    rank = i;
-                    highScore = true;
-                    break;
-                } else if (saveScore != -2) {
-                    int saveScore2 = scores[i];
-                    scores[i] = saveScore;
-                    saveScore = saveScore2;
-                    String saveName2 = names[i];
-                    names[i] = saveName;
-                    saveName = saveName2;
-                } else if (compare < scores[i]) {
-                    rank = i;
-                    highScore = true;
-                    saveScore = scores[i];
-                    saveName = names[i];
-                    scores[i] = compare;
-                    names[i] = "";
-                }
-            }
-            
-            // if user got a high score, prompt them to enter their name
-            String name = "";
-            if (highScore) {
-                final JFrame winner = new JFrame("You won!");
-                winner.setSize(400, 200);
-                winner.setLocation(200, 200);
-                String message = "Congrats! You just set a new high score!\n"
-                        + "Please enter your name to record your score.";
-                name = (String)JOptionPane.showInputDialog(winner, message, "You won!",
-                        JOptionPane.PLAIN_MESSAGE, null, null, "Name");
-                // notify user if they use an invalid character (=)
-                if (name.contains(":")) {
-                    message += "\n" + "\":\" is an invalid character. Please try again.";
-                    name = (String)JOptionPane.showInputDialog(winner, message, "You won!",
-                            JOptionPane.PLAIN_MESSAGE, null, null, "Name");
-                }
-                names[rank] = name;
-            }
-            
-            // write scores to file
-            // also write scores and names to an array that will be accessible from Game
-            for (int i = 0; i < 5; i++) {
-                if (scores[i] != -1) {
-                    toOut = toOut + "\n" + (i + 1) + ". " + names[i] + ": " + scores[i]
-                            + " seconds";
-                } else {
-                    toOut = toOut + "\n" + (i + 1) + ". ";
+    /**
+     * getLeaderboard() returns the leaderboard of won games, opening it the first time it is
+     * needed (and importing the scores from the old highscores.txt file if it is new); it is
+     * shared by the whole program, and refreshed when another program adds to the file
+     * 
+     * @return Leaderboard leaderboard: the leaderboard, or null if it could not be opened
+     */
+    public static Leaderboard getLeaderboard() {
+        if (leaderboard == null) {
+            try {
+                leaderboard = new Leaderboard(LEADERBOARD_FILE);
+                if (leaderboard.size() == 0 && new File(OLD_SCORES_FILE).exists()) {
+                    leaderboard.importText(OLD_SCORES_FILE);
                 }
+                // finish writing submitted games when the program exits
+                Runtime.getRuntime().addShutdownHook(new Thread() {
+                    public void run() {
+                        try {
+                            leaderboard.close();
+                        } catch (IOException e) {
+                            System.out.println("error while saving high scores: "
+                                    + e.getMessage());
+                        }
+                    }
+                });
+                // pick up games won in other windows
+                leaderboard.watch(new Runnable() {
+                    public void run() {
+                        SwingUtilities.invokeLater(new Runnable() {
+                            public void run() {
+                                try {
+                                    leaderboard.refresh();
+                                } catch (IOException e) {
+                                    System.out.println("error while reading high scores: "
+                                            + e.getMessage());
+                                }
+                            }
+                        });
+                    }
+                });
+            } catch (IOException e) {
+                System.out.println("error while opening high scores: " + e.getMessage());
             }
-            line = in.readLine();
-            while (line != null) {
-                toOut = toOut + "\n" + line;
-                line = in.readLine();
-            }
-            Writer out = new BufferedWriter(new FileWriter("highscores.txt"));
-            out.write(toOut);
-            
-            in.close();
-            out.flush();
-            out.close();
-          } catch (IOException e) {
-            System.out.println("error while checking document: " + e.getMessage());
-          }
+        }
+        return leaderboard;
     }
     
     /**
@@ -385,7 +708,7 @@ public class Board extends JPanel {
      * @return int numBombs: the Board's numBombs property
      */
     public int getNumBombs() {
-        return numBombs;
+        return engine.getNumBombs();
     }
     
     /**
@@ -394,23 +717,46 @@ public class Board extends JPanel {
      * @return int numPieces: the Board's numPieces property
      */
     public int getNumPieces() {
-        return numPieces;
+        return engine.getNumPieces();
     }
     
     /**
-     * setStatus(String status) updates the Board's status property to the given string
+     * getNumRows() returns the number of rows of pieces on the board
      * 
-     * @param String status: the new status to update the Board's status property to
+     * @return int numRows: the Board's number of rows
      */
-    private void setStatus(String status) {
-        this.status = status;
+    public int getNumRows() {
+        return engine.getNumRows();
     }
     
     /**
-     * setGameOver() updates the Board's gameOver property to true, ending the game
+     * getNumCols() returns the number of columns of pieces on the board
+     * 
+     * @return int numCols: the Board's number of columns
      */
-    private void setGameOver() {
-        gameOver = true;
+    public int getNumCols() {
+        return engine.getNumCols();
+    }
+    
+    /**
+     * getStatus() returns the message describing the status of the game
+     * 
+     * @return String status: "You win!", "You lose!", or while the game is being played the
+     *         message from the last hint, if any, or a warning that a board in no guessing mode
+     *         may need guessing
+     */
+    private String getStatus() {
+        switch (engine.status()) {
+            case WON:
+                return "You win!";
+            case LOST:
+                return "You lose!";
+            default:
+                if (hintMessage != null) {
+                    return hintMessage;
+                }
+                return mayNeedGuessing ? "May need guessing" : "";
+        }
     }
     
     /**
@@ -418,14 +764,72 @@ public class Board extends JPanel {
      * user presses the "new game" button from Game
      */
     public void reset() {
-        gameOver = false;
-        timeStarted = false;
-        status = "";
-        seconds = 0;
-        pieces = new Piece[numPieces][numPieces];
-        assignBombs();
-        
+        newGame(getNumRows(), getNumCols(), getNumBombs());
         repaint();
+        hud.repaint();
+    }
+    
+    /**
+     * setNoGuess(boolean noGuess) sets whether new games can always be won without guessing. Such
+     * boards come ready from NoGuessGenerator, and the Piece to start from is outlined in green.
+     * Takes effect from the next game.
+     * 
+     * @param boolean noGuess: true for boards that need no guessing
+     */
+    public void setNoGuess(boolean noGuess) {
+        this.noGuess = noGuess;
+        if (noGuess) {
+            NoGuessGenerator.shared().prepare(getNumRows(), getNumCols(), getNumBombs());
+        }
+    }
+    
+    /**
+     * isNoGuess() returns true if new games can always be won without guessing
+     * 
+     * @return boolean noGuess: true for boards that need no guessing
+     */
+    public boolean isNoGuess() {
+        return noGuess;
+    }
+    
+    /**
+     * newGame(int numRows, int numCols, int numBombs) starts a new game in the engine and the
+     * solver; in no guessing mode the bombs are placed from a ready board and its starting Piece
+     * is outlined (if none is ready, an ordinary game is started at once instead, and the status
+     * says so)
+     */
+    private void newGame(int numRows, int numCols, int numBombs) {
+        stopGame();
+        NoGuessGenerator.Layout layout = null;
+        if (noGuess) {
+            layout = NoGuessGenerator.shared().take(numRows, numCols, numBombs);
+        }
+        hintMessage = null;
+        mayNeedGuessing = noGuess && layout == null;
+        if (layout == null) {
+            engine.reset(numRows, numCols, numBombs);
+            hintCell = -1;
+            layoutStart = -1;
+        } else {
+            engine.reset(numRows, numCols, numBombs, layout.seed);
+            engine.placeBombs(layout.start / numCols, layout.start % numCols);
+            hintCell = layout.start;
+            hintColor = Color.GREEN;
+            layoutStart = layout.start;
+        }
+        solver.reset();
+    }
+    
+    /**
+     * stopGame() finishes recording the current game, or stops showing a replay
+     */
+    private void stopGame() {
+        stopRecording();
+        practice = false;
+        if (playback != null) {
+            playback.stop();
+            playback = null;
+        }
     }
     
     /**
@@ -435,61 +839,220 @@ public class Board extends JPanel {
      * @param char level: the first character of the given level (either B, I, or E)
      */
     public void setLevel(char level) {
-        gameOver = false;
-        timeStarted = false;
-        status = "";
-        seconds = 0;
         this.level = level;
+        int[] size = levelSize(level);
+        if (size == null) {
+            size = new int[] { getNumRows(), getNumCols(), getNumBombs() };
+        }
+        resize(size[0], size[1], size[2]);
+    }
+    
+    /**
+     * levelSize(char level) returns the size of the board for a level (also used by Simulator, so
+     * that simulated games are played at the same sizes)
+     * 
+     * @param char level: the first character of the given level (either B, I, or E)
+     * @return int[] size: the number of rows, columns and bombs, or null for any other level
+     */
+    public static int[] levelSize(char level) {
         if (level == 'B') {
-            numPieces = 9;
-            numBombs = 10;
+            return new int[] { 9, 9, 10 };
         } else if (level == 'I') {
-            numPieces = 16;
-            numBombs = 40;
+            return new int[] { 16, 16, 40 };
         } else if (level == 'E') {
-            numPieces = 22;
-            numBombs = 100;
+            return new int[] { 22, 22, 100 };
         }
-        pieces = new Piece[numPieces][numPieces];
-        assignBombs();
+        return null;
+    }
+    
+    /**
+     * setCustom(int numRows, int numCols, int numBombs) resets the board to the given number of
+     * rows, columns and bombs (level 'C'); scores for custom boards are not recorded
+     * 
+     * @param int numRows: the number of rows of pieces
+     * @param int numCols: the number of columns of pieces
+     * @param int numBombs: the number of bombs
+     */
+    public void setCustom(int numRows, int numCols, int numBombs) {
+        this.level = 'C';
+        resize(numRows, numCols, numBombs);
+    }
+    
+    /**
+     * resize(int numRows, int numCols, int numBombs) starts a new game with the given size and
+     * lays the board out again
+     */
+    private void resize(int numRows, int numCols, int numBombs) {
+        newGame(numRows, numCols, numBombs);
+        layOut();
+    }
+    
+    /**
+     * layOut() lays the board out again for the engine's size and repaints it
+     */
+    private void layOut() {
+        findOrigin();
+        revalidate();
         repaint();
+        hud.repaint();
     }
     
     @Override
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
         
-        // draw number of bombs left for user to identify
-        String bombsLeft = "Bombs Left: " + Integer.toString(numBombs - numClicked());
-        int width = bombsLeft.length() * 7 + 5;
-        g.drawRect(0, 0, width, 20);
-        g.drawString(bombsLeft, 5, 15);
-        
-        // draw game status
-        String status = this.status;
-        int center = (BOARD_WIDTH / 2) - (status.length() * 7 / 2);
-        g.drawString(status, center, 15);
-        
-        // draw timer
-        String time = "Time: " + seconds;
-        int timeWidth = time.length() * 7 + 8;
-        g.drawRect(BOARD_WIDTH - timeWidth, 0, timeWidth, 20);
-        g.drawString(time, BOARD_WIDTH - timeWidth + 5, 15);
+        // only draw what is inside the area being repainted
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
         
-        // draw Pieces
-        for (int i = 0; i < numPieces; i++) {
-            for (int j = 0; j < numPieces; j++) {
-                if (gameOver) {
-                    pieces[i][j].setGameOver();
-                }
-                pieces[i][j].draw(g);
+        // draw the Pieces that intersect the clip (including the one whose border is at its edge)
+        // (in a scroll pane the clip is at most the visible area, so the cost of drawing depends on
+        // the size of the view, not of the board)
+        int firstRow = Math.max(0, (clip.y - originY) / cellSize - 1);
+        int lastRow = Math.min(getNumRows() - 1, (clip.y + clip.height - originY) / cellSize);
+        int firstCol = Math.max(0, (clip.x - originX) / cellSize - 1);
+        int lastCol = Math.min(getNumCols() - 1, (clip.x + clip.width - originX) / cellSize);
+        boolean gameOver = engine.status() != MinesweeperEngine.Status.PLAYING;
+        for (int i = firstRow; i <= lastRow; i++) {
+            for (int j = firstCol; j <= lastCol; j++) {
+                Piece.draw(g, originX + j * cellSize, originY + i * cellSize, cellSize,
+                        engine.hasBomb(i, j), engine.getNumAdjacent(i, j),
+                        engine.isRevealed(i, j), engine.isFlagged(i, j), gameOver);
             }
         }
+        
+        // outline the hint: green if it is safe, red if it is a bomb
+        if (hintCell != -1) {
+            int x = originX + (hintCell % getNumCols()) * cellSize;
+            int y = originY + (hintCell / getNumCols()) * cellSize;
+            g.setColor(hintColor);
+            g.drawRect(x + 1, y + 1, cellSize - 2, cellSize - 2);
+            g.drawRect(x + 2, y + 2, cellSize - 4, cellSize - 4);
+        }
     }
 
+    @Override
+    public void updateUI() {
+        super.updateUI();
+        // the look and feel changed, so the Piece tiles need to be drawn again
+        Piece.clearTiles();
+    }
+    
+    /**
+     * getPreferredSize() returns the size of the board area: at least BOARD_WIDTH by BOARD_HEIGHT,
+     * or larger if needed to fit all of the Pieces
+     */
     @Override
     public Dimension getPreferredSize() {
-        return new Dimension(BOARD_WIDTH, BOARD_HEIGHT);
+        int width = Math.max(BOARD_WIDTH, getNumCols() * cellSize + 2 * MARGIN);
+        int height = Math.max(BOARD_HEIGHT, getNumRows() * cellSize + 2 * MARGIN);
+        return new Dimension(width, height);
+    }
+    
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        Dimension size = getPreferredSize();
+        return new Dimension(Math.min(size.width, MAX_VIEWPORT_WIDTH),
+                Math.min(size.height, MAX_VIEWPORT_HEIGHT));
+    }
+    
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        // scroll by one Piece
+        return cellSize;
+    }
+    
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation,
+            int direction) {
+        // scroll by a screen, less one Piece so that a row or column stays in view
+        int extent = orientation == SwingConstants.HORIZONTAL ? visibleRect.width
+                : visibleRect.height;
+        return Math.max(cellSize, extent - cellSize);
+    }
+    
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        // fill the view (with the Pieces centered) when it is wider than the board
+        return getParent() instanceof JViewport
+                && getParent().getWidth() > getPreferredSize().width;
+    }
+    
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport
+                && getParent().getHeight() > getPreferredSize().height;
+    }
+    
+    /**
+     * Hud
+     * 
+     * Draws the number of bombs left, the status of the game, and the timer above the board
+     */
+    private class Hud extends JComponent {
+        
+        /**
+         * bombsLeftArea() returns the area of the bombs left counter (the left third)
+         */
+        Rectangle bombsLeftArea() {
+            return new Rectangle(0, 0, getWidth() / 3, HUD_HEIGHT);
+        }
+        
+        /**
+         * statusArea() returns the area of the game status (the middle third)
+         */
+        Rectangle statusArea() {
+            return new Rectangle(getWidth() / 3, 0, getWidth() / 3, HUD_HEIGHT);
+        }
+        
+        /**
+         * timerArea() returns the area of the timer (the right third)
+         */
+        Rectangle timerArea() {
+            return new Rectangle(getWidth() - getWidth() / 3, 0, getWidth() / 3, HUD_HEIGHT);
+        }
+        
+        @Override
+        public void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            
+            // only draw what is inside the area being repainted
+            Rectangle clip = g.getClipBounds();
+            if (clip == null) {
+                clip = new Rectangle(0, 0, getWidth(), getHeight());
+            }
+            int width = getWidth();
+            
+            // draw number of bombs left for user to identify
+            if (clip.intersects(bombsLeftArea())) {
+                String bombsLeft = "Bombs Left: " + Integer.toString(getNumBombs() - numClicked());
+                int boxWidth = bombsLeft.length() * 7 + 5;
+                g.drawRect(0, 0, boxWidth, 20);
+                g.drawString(bombsLeft, 5, 15);
+            }
+            
+            // draw game status
+            if (clip.intersects(statusArea())) {
+                String status = getStatus();
+                int center = (width / 2) - (status.length() * 7 / 2);
+                g.drawString(status, center, 15);
+            }
+            
+            // draw timer
+            if (clip.intersects(timerArea())) {
+                String time = "Time: " + engine.elapsed();
+                int timeWidth = time.length() * 7 + 8;
+                g.drawRect(width - timeWidth - 1, 0, timeWidth, 20);
+                g.drawString(time, width - timeWidth + 4, 15);
+            }
+        }
+        
+        @Override
+        public Dimension getPreferredSize() {
+            return new Dimension(BOARD_WIDTH, HUD_HEIGHT);
+        }
     }
     
 }
\ No newline at end of file
@@ -0,0 +1,237 @@
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.util.Random;
+
+import javax.swing.*;
+
+/**
+ * EndlessBoard
+ *
+ * A view of an endless game (see EndlessEngine) that users play the same way as a Board. The
+ * board has no edges, so it does not go in a JScrollPane: dragging with the mouse (or the mouse
+ * wheel, holding shift to go sideways) moves the view, and only the Pieces in the view are
+ * drawn. An opening too big to reveal at once is finished a part at a time by a timer, so the
+ * event thread is never held up for long. The score is the number of safe Pieces revealed.
+ */
+@SuppressWarnings("serial")
+public class EndlessBoard extends JPanel {
+    // fraction of Pieces with bombs (about the same as Expert), and the most chunks kept in memory
+    public static final double DENSITY = 0.2;
+    public static final int MAX_CHUNKS = 256;
+
+    // the game rules and state; replaced by a new engine for each game
+    private EndlessEngine engine;
+
+    // position of the top left corner of the view, in pixels from the top left corner of the
+    // Piece at (0, 0)
+    private long viewX;
+    private long viewY;
+
+    // where the mouse was when it was last pressed or dragged
+    private Point dragFrom;
+
+    // goes on with an opening that was too big to reveal at once; see revealPending()
+    private final Timer pending;
+    public static final int REVEAL_DELAY = 10;
+
+    // Pieces moved by one click of the mouse wheel
+    private static final int WHEEL_PIECES = 3;
+
+    // size of the view before the user resizes it
+    public static final int VIEW_WIDTH = 600;
+    public static final int VIEW_HEIGHT = 450;
+
+    // height of the score and status drawn over the top of the view
+    private static final int HUD_HEIGHT = 21;
+
+    /**
+     * constructor starts a new endless game, handles MouseEvents and sets up the timer that
+     * finishes big openings
+     */
+    public EndlessBoard() {
+        setBorder(BorderFactory.createLineBorder(Color.BLACK));
+
+        pending = new Timer(REVEAL_DELAY, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                if (engine.isRevealPending()) {
+                    engine.revealPending();
+                    repaint();
+                }
+                if (!engine.isRevealPending()) {
+                    pending.stop();
+                }
+            }
+        });
+        newGame();
+
+        MouseAdapter mouse = new MouseAdapter() {
+            public void mouseClicked(MouseEvent e) {
+                if (engine.status() != MinesweeperEngine.Status.PLAYING) {
+                    return;
+                }
+                int row = rowAt(e.getY());
+                int col = colAt(e.getX());
+                // check for right click (either through right click or left click + control)
+                if ((e.getButton() == MouseEvent.BUTTON1 && e.isControlDown())
+                        || e.getButton() == MouseEvent.BUTTON3) {
+                    if (engine.toggleFlag(row, col)) {
+                        repaint();
+                    }
+                } else if (e.getButton() == MouseEvent.BUTTON1) {
+                    if (engine.reveal(row, col) > 0) {
+                        if (engine.isRevealPending()) {
+                            pending.start();
+                        }
+                        repaint();
+                    }
+                }
+            }
+
+            public void mousePressed(MouseEvent e) {
+                dragFrom = e.getPoint();
+            }
+
+            public void mouseDragged(MouseEvent e) {
+                if (dragFrom != null) {
+                    moveView(dragFrom.x - e.getX(), dragFrom.y - e.getY());
+                    dragFrom = e.getPoint();
+                }
+            }
+
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                int pixels = e.getWheelRotation() * WHEEL_PIECES * Piece.SIZE;
+                if (e.isShiftDown()) {
+                    moveView(pixels, 0);
+                } else {
+                    moveView(0, pixels);
+                }
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+    }
+
+    /**
+     * reset() starts a new endless game with a new world seed; to be called when the user presses
+     * the "new game" button
+     */
+    public void reset() {
+        close();
+        newGame();
+        repaint();
+    }
+
+    /**
+     * newGame() makes the engine for a new game and puts the Piece at (0, 0) in the middle of the
+     * view
+     */
+    private void newGame() {
+        engine = new EndlessEngine(new Random().nextLong(), DENSITY, MAX_CHUNKS);
+        viewX = -VIEW_WIDTH / 2;
+        viewY = -VIEW_HEIGHT / 2;
+    }
+
+    /**
+     * close() stops the game and deletes its spill file
+     */
+    public void close() {
+        pending.stop();
+        engine.close();
+    }
+
+    /**
+     * moveView(int dx, int dy) moves the view by the given number of pixels and repaints it
+     */
+    private void moveView(int dx, int dy) {
+        viewX += dx;
+        viewY += dy;
+        repaint();
+    }
+
+    /**
+     * rowAt(int y) returns the row of the Pieces at the given y position in the view
+     */
+    private int rowAt(int y) {
+        return (int) Math.floorDiv(viewY + y, Piece.SIZE);
+    }
+
+    /**
+     * colAt(int x) returns the column of the Pieces at the given x position in the view
+     */
+    private int colAt(int x) {
+        return (int) Math.floorDiv(viewX + x, Piece.SIZE);
+    }
+
+    /**
+     * getEngine() returns the engine of the current game
+     *
+     * @return EndlessEngine engine: the engine
+     */
+    public EndlessEngine getEngine() {
+        return engine;
+    }
+
+    @Override
+    public void paintComponent(Graphics g) {
+        super.paintComponent(g);
+
+        // only draw what is inside the area being repainted
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+
+        // draw the Pieces that intersect the clip
+        int firstRow = rowAt(clip.y);
+        int lastRow = rowAt(clip.y + clip.height);
+        int firstCol = colAt(clip.x);
+        int lastCol = colAt(clip.x + clip.width);
+        boolean gameOver = engine.status() != MinesweeperEngine.Status.PLAYING;
+        for (int i = firstRow; i <= lastRow; i++) {
+            for (int j = firstCol; j <= lastCol; j++) {
+                boolean revealed = engine.isRevealed(i, j);
+                // (hidden Pieces are only shown with their bombs once the game is over)
+                boolean hasBomb = (revealed || gameOver) && engine.hasBomb(i, j);
+                Piece.draw(g, (int) ((long) j * Piece.SIZE - viewX),
+                        (int) ((long) i * Piece.SIZE - viewY), hasBomb, engine.getNumAdjacent(i, j),
+                        revealed, engine.isFlagged(i, j), gameOver);
+            }
+        }
+
+        // draw the score, and the status once the game is over
+        String score = "Revealed: " + engine.numRevealed();
+        int boxWidth = score.length() * 7 + 5;
+        g.setColor(getBackground());
+        g.fillRect(0, 0, boxWidth, HUD_HEIGHT - 1);
+        g.setColor(Color.BLACK);
+        g.drawRect(0, 0, boxWidth, HUD_HEIGHT - 1);
+        g.drawString(score, 5, 15);
+        if (gameOver) {
+            String status = "You lose!";
+            int statusWidth = status.length() * 7 + 8;
+            int x = (getWidth() - statusWidth) / 2;
+            g.setColor(getBackground());
+            g.fillRect(x, 0, statusWidth, HUD_HEIGHT - 1);
+            g.setColor(Color.BLACK);
+            g.drawRect(x, 0, statusWidth, HUD_HEIGHT - 1);
+            g.drawString(status, x + 4, 15);
+        }
+    }
+
+    @Override
+    public void updateUI() {
+        super.updateUI();
+        // the look and feel changed, so the Piece tiles need to be drawn again
+        Piece.clearTiles();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(VIEW_WIDTH, VIEW_HEIGHT);
+    }
+}
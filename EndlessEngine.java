@@ -0,0 +1,510 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * EndlessEngine
+ *
+ * The rules of an "endless" game on a board with no edges. The board is split into chunks of
+ * CHUNK_SIZE x CHUNK_SIZE Pieces. A chunk's bombs are never stored: they are generated whenever
+ * they are needed from a hash of the world seed and the chunk's coordinates, so they are always
+ * the same. Only the revealed and flagged Pieces are real state; they live in a map of recently
+ * used chunks, and when the map is full the least recently used chunk is written to a spill file
+ * (or simply dropped, if nothing in it was revealed or flagged). The spill file is a hash table of
+ * chunks keyed by their coordinates, so finding a spilled chunk needs no index in memory. Memory
+ * stays bounded however far the player goes.
+ *
+ * Like MinesweeperEngine this has no AWT or Swing dependency. Coordinates are (row, col) and may
+ * be negative.
+ */
+public class EndlessEngine {
+    // Pieces on one side of a chunk; each row of a chunk is one long
+    public static final int CHUNK_SIZE = 64;
+    private static final int SHIFT = 6;
+    private static final int MASK = CHUNK_SIZE - 1;
+
+    // below this density, areas with no adjacent bombs could go on forever
+    public static final double MIN_DENSITY = 0.15;
+
+    // the most Pieces a single call will uncover; the rest of a bigger opening is revealed by the
+    // next calls (see revealPending()), so no call takes too long (smaller in tests)
+    private static final int MAX_REVEAL = 1 << 20;
+    int maxReveal = MAX_REVEAL;
+
+    /**
+     * Chunk
+     *
+     * The revealed and flagged Pieces of one chunk, one long per row
+     */
+    private static class Chunk {
+        final long[] revealed = new long[CHUNK_SIZE];
+        final long[] flagged = new long[CHUNK_SIZE];
+        // bombs, generated from the seed when first needed
+        long[] bombs;
+        // true if the chunk was read back from the spill file
+        boolean spilled;
+
+        boolean isEmpty() {
+            for (int r = 0; r < CHUNK_SIZE; r++) {
+                if (revealed[r] != 0 || flagged[r] != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final long worldSeed;
+    private final int bombsPerChunk;
+    private final int maxChunks;
+
+    // the chunks in memory, least recently used first
+    private final LinkedHashMap<Long, Chunk> chunks;
+
+    // the spill file: a table of spillSlots records, each a used marker, a chunk's key, and its
+    // revealed and flagged rows, found by linear probing from a hash of the key; it doubles in
+    // size (into a new file) before it is half full
+    private static final int RECORD_HEADER = 4 + 8;
+    private static final int RECORD_SIZE = RECORD_HEADER + 2 * CHUNK_SIZE * 8;
+    private static final int SPILL_SLOTS = 1024;
+    private File spillFile;
+    private FileChannel spill;
+    private long spillSlots;
+    private long numSpilled;
+    private final ByteBuffer spillBuffer = ByteBuffer.allocate(RECORD_SIZE);
+    private final ByteBuffer headerBuffer = ByteBuffer.allocate(RECORD_HEADER);
+
+    // the first Piece revealed; it and its neighbours never have bombs
+    private boolean started = false;
+    private int startRow;
+    private int startCol;
+
+    private MinesweeperEngine.Status status = MinesweeperEngine.Status.PLAYING;
+    private long safeRevealed;
+    private long flagsPlaced;
+
+    // worklist for reveals, each entry a packed (row, col); between calls, queue[head] to
+    // queue[tail - 1] are revealed Pieces of an unfinished opening whose neighbours are still to
+    // be revealed
+    private long[] queue = new long[1024];
+    private int head;
+    private int tail;
+
+    /**
+     * constructor sets the world seed, the fraction of Pieces with bombs (at least MIN_DENSITY),
+     * and the most chunks to keep in memory at once
+     */
+    public EndlessEngine(long worldSeed, double density, int maxChunks) {
+        this.worldSeed = worldSeed;
+        double d = Math.min(1, Math.max(MIN_DENSITY, density));
+        this.bombsPerChunk = (int) Math.round(d * CHUNK_SIZE * CHUNK_SIZE);
+        this.maxChunks = Math.max(9, maxChunks);
+        this.chunks = new LinkedHashMap<Long, Chunk>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+                if (size() <= EndlessEngine.this.maxChunks) {
+                    return false;
+                }
+                evict(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * reveal(int row, int col) reveals the Piece at the given position; if it has a bomb the game
+     * is lost, otherwise any surrounding Pieces with no adjacent bombs are revealed as well, up to
+     * about MAX_REVEAL Pieces (see revealPending()). It also goes on with an unfinished opening.
+     *
+     * @return int: the number of newly revealed Pieces (0 if the board did not change)
+     */
+    public int reveal(int row, int col) {
+        if (status != MinesweeperEngine.Status.PLAYING || isFlagged(row, col)
+                || isRevealed(row, col)) {
+            return 0;
+        }
+        if (!started) {
+            started = true;
+            startRow = row;
+            startCol = col;
+        }
+
+        if (hasBomb(row, col)) {
+            setRevealed(row, col);
+            status = MinesweeperEngine.Status.LOST;
+            return 1;
+        }
+
+        setRevealed(row, col);
+        push(pack(row, col));
+        return flood(1);
+    }
+
+    /**
+     * revealPending() goes on with an opening that was too big for one call: until it is
+     * finished (see isRevealPending()), some revealed Pieces with no adjacent bombs still have
+     * hidden neighbours. Each call reveals up to about MAX_REVEAL more Pieces.
+     *
+     * @return int: the number of newly revealed Pieces
+     */
+    public int revealPending() {
+        if (status != MinesweeperEngine.Status.PLAYING) {
+            return 0;
+        }
+        return flood(0);
+    }
+
+    /**
+     * isRevealPending() returns true if an opening has not been finished yet
+     */
+    public boolean isRevealPending() {
+        return head < tail && status == MinesweeperEngine.Status.PLAYING;
+    }
+
+    /**
+     * flood(int count) reveals around the Pieces in the worklist (a flood fill over an explicit
+     * worklist, as in MinesweeperEngine) until it is empty or maxReveal Pieces have been revealed,
+     * counting from the given number already revealed by this call
+     */
+    private int flood(int count) {
+        while (head < tail && count < maxReveal) {
+            long cell = queue[head++];
+            int r = (int) (cell >> 32);
+            int c = (int) cell;
+            if (countAdjacent(r, c) != 0) {
+                continue;
+            }
+            for (int i = r - 1; i <= r + 1; i++) {
+                for (int j = c - 1; j <= c + 1; j++) {
+                    if (!isRevealed(i, j) && !isFlagged(i, j)) {
+                        setRevealed(i, j);
+                        count++;
+                        push(pack(i, j));
+                    }
+                }
+            }
+        }
+        if (head == tail) {
+            head = 0;
+            tail = 0;
+        }
+        safeRevealed += count;
+        return count;
+    }
+
+    /**
+     * push(long cell) adds a packed position to the end of the worklist, moving the entries down
+     * over the used ones or growing it when it is full
+     */
+    private void push(long cell) {
+        if (tail == queue.length) {
+            if (head >= queue.length / 2) {
+                System.arraycopy(queue, head, queue, 0, tail - head);
+                tail -= head;
+                head = 0;
+            } else {
+                queue = Arrays.copyOf(queue, 2 * tail);
+            }
+        }
+        queue[tail++] = cell;
+    }
+
+    /**
+     * toggleFlag(int row, int col) flags the Piece at the given position, or removes its flag
+     *
+     * @return boolean: true if the board changed
+     */
+    public boolean toggleFlag(int row, int col) {
+        if (status != MinesweeperEngine.Status.PLAYING || isRevealed(row, col)) {
+            return false;
+        }
+        Chunk chunk = chunk(row, col);
+        long bit = 1L << (col & MASK);
+        chunk.flagged[row & MASK] ^= bit;
+        flagsPlaced += (chunk.flagged[row & MASK] & bit) != 0 ? 1 : -1;
+        return true;
+    }
+
+    /**
+     * getNumAdjacent(int row, int col) returns the number of bombs adjacent to the Piece at the
+     * given position, or -1 if it has not been revealed
+     */
+    public int getNumAdjacent(int row, int col) {
+        if (!isRevealed(row, col)) {
+            return -1;
+        }
+        return countAdjacent(row, col);
+    }
+
+    /**
+     * countAdjacent(int row, int col) counts the bombs around the given position
+     */
+    private int countAdjacent(int row, int col) {
+        int num = 0;
+        for (int i = row - 1; i <= row + 1; i++) {
+            for (int j = col - 1; j <= col + 1; j++) {
+                if ((i != row || j != col) && hasBomb(i, j)) {
+                    num++;
+                }
+            }
+        }
+        return num;
+    }
+
+    /**
+     * hasBomb(int row, int col) returns true if the Piece at the given position has a bomb
+     */
+    public boolean hasBomb(int row, int col) {
+        if (started && Math.abs((long) row - startRow) <= 1
+                && Math.abs((long) col - startCol) <= 1) {
+            return false;
+        }
+        Chunk chunk = chunk(row, col);
+        if (chunk.bombs == null) {
+            chunk.bombs = generateBombs(row >> SHIFT, col >> SHIFT);
+        }
+        return (chunk.bombs[row & MASK] & (1L << (col & MASK))) != 0;
+    }
+
+    /**
+     * isRevealed(int row, int col) returns true if the Piece at the given position is revealed
+     */
+    public boolean isRevealed(int row, int col) {
+        return (chunk(row, col).revealed[row & MASK] & (1L << (col & MASK))) != 0;
+    }
+
+    /**
+     * isFlagged(int row, int col) returns true if the Piece at the given position is flagged
+     */
+    public boolean isFlagged(int row, int col) {
+        return (chunk(row, col).flagged[row & MASK] & (1L << (col & MASK))) != 0;
+    }
+
+    private void setRevealed(int row, int col) {
+        chunk(row, col).revealed[row & MASK] |= 1L << (col & MASK);
+    }
+
+    /**
+     * status() returns the status of the game: PLAYING or LOST (an endless game cannot be won)
+     */
+    public MinesweeperEngine.Status status() {
+        return status;
+    }
+
+    /**
+     * numRevealed() returns the number of safe Pieces revealed so far, which is the score
+     */
+    public long numRevealed() {
+        return safeRevealed;
+    }
+
+    /**
+     * numFlagged() returns the number of Pieces currently flagged
+     */
+    public long numFlagged() {
+        return flagsPlaced;
+    }
+
+    /**
+     * numChunksInMemory() returns how many chunks are currently held in memory
+     */
+    public int numChunksInMemory() {
+        return chunks.size();
+    }
+
+    /**
+     * close() deletes the spill file; the engine cannot be used afterwards
+     */
+    public void close() {
+        try {
+            if (spill != null) {
+                spill.close();
+                spillFile.delete();
+            }
+        } catch (IOException e) {
+            System.out.println("error while closing spill file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * chunk(int row, int col) returns the chunk holding the given position, reading it back from
+     * the spill file or creating it if it is not in memory
+     */
+    private Chunk chunk(int row, int col) {
+        long key = pack(row >> SHIFT, col >> SHIFT);
+        Chunk chunk = chunks.get(key);
+        if (chunk == null) {
+            chunk = new Chunk();
+            if (spill != null) {
+                try {
+                    long slot = find(spill, spillSlots, key);
+                    if (slot >= 0) {
+                        read(spill, slot);
+                        spillBuffer.position(RECORD_HEADER);
+                        for (int r = 0; r < CHUNK_SIZE; r++) {
+                            chunk.revealed[r] = spillBuffer.getLong();
+                        }
+                        for (int r = 0; r < CHUNK_SIZE; r++) {
+                            chunk.flagged[r] = spillBuffer.getLong();
+                        }
+                        chunk.spilled = true;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("error while reading spill file", e);
+                }
+            }
+            chunks.put(key, chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * generateBombs(int chunkRow, int chunkCol) places exactly bombsPerChunk bombs in the given
+     * chunk, by selection sampling with a generator seeded from the world seed and the chunk's
+     * coordinates, so a chunk always gets the same bombs
+     */
+    private long[] generateBombs(int chunkRow, int chunkCol) {
+        long h = worldSeed ^ (chunkRow * 0x9E3779B97F4A7C15L) ^ (chunkCol * 0xC2B2AE3D27D4EB4FL);
+        SplittableRandom random = new SplittableRandom(h);
+        long[] bombs = new long[CHUNK_SIZE];
+        int cells = CHUNK_SIZE * CHUNK_SIZE;
+        int needed = bombsPerChunk;
+        for (int cell = 0; cell < cells && needed > 0; cell++) {
+            if (random.nextInt(cells - cell) < needed) {
+                bombs[cell >>> SHIFT] |= 1L << (cell & MASK);
+                needed--;
+            }
+        }
+        return bombs;
+    }
+
+    /**
+     * evict(long key, Chunk chunk) writes a chunk that is leaving memory to the spill file, unless
+     * nothing in it has been revealed or flagged (its bombs can always be generated again)
+     */
+    private void evict(long key, Chunk chunk) {
+        if (!chunk.spilled && chunk.isEmpty()) {
+            return;
+        }
+        try {
+            if (spill == null) {
+                spillFile = File.createTempFile("minesweeper", ".chunks");
+                spillFile.deleteOnExit();
+                spill = new RandomAccessFile(spillFile, "rw").getChannel();
+                spillSlots = SPILL_SLOTS;
+            }
+            long slot = find(spill, spillSlots, key);
+            if (slot < 0) {
+                if (2 * (numSpilled + 1) > spillSlots) {
+                    grow();
+                    slot = find(spill, spillSlots, key);
+                }
+                numSpilled++;
+                slot = -slot - 1;
+            }
+            spillBuffer.clear();
+            spillBuffer.putInt(1);
+            spillBuffer.putLong(key);
+            for (int r = 0; r < CHUNK_SIZE; r++) {
+                spillBuffer.putLong(chunk.revealed[r]);
+            }
+            for (int r = 0; r < CHUNK_SIZE; r++) {
+                spillBuffer.putLong(chunk.flagged[r]);
+            }
+            spillBuffer.flip();
+            write(spill, slot);
+        } catch (IOException e) {
+            throw new UncheckedIOException("error while writing spill file", e);
+        }
+    }
+
+    /**
+     * grow() copies every record of the spill file into a new file with twice as many slots
+     */
+    private void grow() throws IOException {
+        File newFile = File.createTempFile("minesweeper", ".chunks");
+        newFile.deleteOnExit();
+        FileChannel newSpill = new RandomAccessFile(newFile, "rw").getChannel();
+        long newSlots = 2 * spillSlots;
+        // slots past the end of the file were never written
+        long end = spill.size() / RECORD_SIZE;
+        for (long slot = 0; slot < end; slot++) {
+            read(spill, slot);
+            if (spillBuffer.getInt(0) != 0) {
+                write(newSpill, -find(newSpill, newSlots, spillBuffer.getLong(4)) - 1);
+            }
+        }
+        spill.close();
+        spillFile.delete();
+        spill = newSpill;
+        spillFile = newFile;
+        spillSlots = newSlots;
+    }
+
+    /**
+     * find(FileChannel channel, long slots, long key) looks for a chunk in a spill file with the
+     * given number of slots
+     *
+     * @return long slot: the chunk's slot, or -(slot + 1) for the empty slot where it would go
+     */
+    private long find(FileChannel channel, long slots, long key) throws IOException {
+        long slot = (key * 0x9E3779B97F4A7C15L >>> 20) & (slots - 1);
+        while (true) {
+            headerBuffer.clear();
+            long position = slot * RECORD_SIZE;
+            while (headerBuffer.hasRemaining()) {
+                // past the end of the file is empty
+                if (channel.read(headerBuffer, position + headerBuffer.position()) < 0) {
+                    return -slot - 1;
+                }
+            }
+            if (headerBuffer.getInt(0) == 0) {
+                return -slot - 1;
+            }
+            if (headerBuffer.getLong(4) == key) {
+                return slot;
+            }
+            slot = (slot + 1) & (slots - 1);
+        }
+    }
+
+    /**
+     * read(FileChannel channel, long slot) reads the record in the given slot into spillBuffer
+     */
+    private void read(FileChannel channel, long slot) throws IOException {
+        spillBuffer.clear();
+        long position = slot * RECORD_SIZE;
+        while (spillBuffer.hasRemaining()) {
+            if (channel.read(spillBuffer, position + spillBuffer.position()) < 0) {
+                throw new IOException("spill file is truncated");
+            }
+        }
+        spillBuffer.flip();
+    }
+
+    /**
+     * write(FileChannel channel, long slot) writes the record in spillBuffer to the given slot
+     */
+    private void write(FileChannel channel, long slot) throws IOException {
+        long position = slot * RECORD_SIZE;
+        while (spillBuffer.hasRemaining()) {
+            channel.write(spillBuffer, position + spillBuffer.position());
+        }
+    }
+
+    /**
+     * pack(int a, int b) packs two ints into a long (used for chunk keys and queued positions)
+     */
+    private static long pack(int a, int b) {
+        return ((long) a << 32) | (b & 0xFFFFFFFFL);
+    }
+}
@@ -7,7 +7,8 @@
 // imports necessary libraries for Java swing
 import java.awt.*;
 import java.awt.event.*;
-import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
 import javax.swing.*;
 
 /**
@@ -16,19 +17,23 @@ import javax.swing.*;
 public class Game implements Runnable {
     private int bombs = 10;
     private int size = 9;
-    private String[] scores;
-    private String bScores;
-    private String iScores;
-    private String eScores;
+    
+    // the high scores shown for each level, and the version of the leaderboard they came from
+    private final Map<Character, String> scoresCache = new HashMap<Character, String>();
+    private int scoresVersion = -1;
     
 	public void run() {
 		// top-level frame in which game components live
 		final JFrame frame = new JFrame("Minesweeper");
 		frame.setLocation(200, 200);
 		
-		// game board
+		// game board, which scrolls when it is too big for the window, with the bombs left
+		// counter, status and timer kept above it
         final Board board = new Board(size, bombs);
-        frame.add(board, BorderLayout.CENTER);
+        final JPanel board_panel = new JPanel(new BorderLayout());
+        board_panel.add(board.getHud(), BorderLayout.NORTH);
+        board_panel.add(new JScrollPane(board), BorderLayout.CENTER);
+        frame.add(board_panel, BorderLayout.CENTER);
         
 		// instructions and settings panel
         final JPanel settings_panel = new JPanel();
@@ -48,22 +53,31 @@ public class Game implements Runnable {
         final JFrame scoreFrame = new JFrame("High Scores");
         scoreFrame.setSize(280, 160);
         scoreFrame.setLocation(400, 360);
-        highscores();
         JTabbedPane scoresPane = new JTabbedPane();
-        bScores = "<html>" + scores[0] + "<br>" + scores[1] + "<br>" + scores[2] + "<br>"
-                + scores[3] + "<br>" + scores[4] + "</html>";
-        final JLabel beginner = new JLabel(bScores);
+        final JLabel beginner = new JLabel(highscores('B'));
         scoresPane.addTab("Beginner", beginner);
-        iScores = "<html>" + scores[5] + "<br>" + scores[6] + "<br>" + scores[7] + "<br>"
-                + scores[8] + "<br>" + scores[9] + "</html>";
-        final JLabel intermediate = new JLabel(iScores);
+        final JLabel intermediate = new JLabel(highscores('I'));
         scoresPane.addTab("Intermediate", intermediate);
-        eScores = "<html>" + scores[10] + "<br>" + scores[11] + "<br>" + scores[12] + "<br>"
-                + scores[13] + "<br>" + scores[14] + "</html>";
-        final JLabel expert = new JLabel(eScores);
+        final JLabel expert = new JLabel(highscores('E'));
         scoresPane.addTab("Expert", expert);
         scoreFrame.add(scoresPane);
         
+        // endless game window, with its own new game button
+        final JFrame endlessFrame = new JFrame("Endless");
+        endlessFrame.setLocation(240, 240);
+        final EndlessBoard endlessBoard = new EndlessBoard();
+        endlessFrame.add(endlessBoard, BorderLayout.CENTER);
+        final JButton endlessReset = new JButton("New Game");
+        endlessReset.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                endlessBoard.reset();
+            }
+        });
+        final JPanel endless_control_panel = new JPanel();
+        endless_control_panel.add(endlessReset);
+        endlessFrame.add(endless_control_panel, BorderLayout.NORTH);
+        endlessFrame.pack();
+        
         // create instructions button functionality
 		final JButton instructions = new JButton("Instructions");
 		instructions.addActionListener(new ActionListener() {
@@ -73,10 +87,13 @@ public class Game implements Runnable {
                         + "a square to reveal its state (i.e. if it has a bomb, or\n"
                         + "the number of bombs adjacent to it if it doesn't). If\n"
                         + "you think a square has a bomb, right-click on it to\n"
-                        + "flag it.\n\n"
+                        + "flag it. Clicking on a number (or middle-clicking)\n"
+                        + "reveals the squares around it once it has as many\n"
+                        + "flags around it as its number.\n\n"
                         + "To win, you need to correctly flag all of the bombs\n"
-                        + "in the game, and you can keep track of your progress\n"
-                        + "using the counter on the left. If you win, your score\n"
+                        + "in the game (or reveal every square without a bomb),\n"
+                        + "and you can keep track of your progress using the\n"
+                        + "counter on the left. If you win, your score\n"
                         + "will be recorded as the number of seconds it took you\n"
                         + "to complete the game. If your score is in the top five,\n"
                         + "you'll be asked to enter your name to be added to the\n"
@@ -84,7 +101,23 @@ public class Game implements Runnable {
                         + "There are three difficulties, and you can choose which\n"
                         + "one to play at in the settings menu. And if you ever\n"
                         + "want to start a new game, click the \"new game\" button\n"
-                        + "at the top.\n\n"
+                        + "at the top. If you get stuck, the \"hint\" button\n"
+                        + "outlines a square that is safe (green) or a bomb\n"
+                        + "(red); if you have to guess, it outlines the square\n"
+                        + "least likely to be a bomb (orange).\n\n"
+                        + "To practice, the \"undo\" button takes back your\n"
+                        + "last move, even one that hit a bomb, but then the\n"
+                        + "game's score is not recorded.\n\n"
+                        + "With \"no guessing\" checked, every game can be won\n"
+                        + "without guessing if you start from the square\n"
+                        + "outlined in green.\n\n"
+                        + "Every game is recorded, and the \"replays\" button\n"
+                        + "shows a recorded game again at the speed you choose.\n\n"
+                        + "Big boards can be scrolled, and you can zoom in and\n"
+                        + "out by holding control and using the mouse wheel.\n\n"
+                        + "The \"endless\" button opens a board with no edges;\n"
+                        + "drag it or use the mouse wheel to move around, and\n"
+                        + "see how many squares you can reveal.\n\n"
                         + "Good luck!";
                 JOptionPane.showMessageDialog(instrFrame, message, "Instructions",
                         JOptionPane.PLAIN_MESSAGE);
@@ -97,7 +130,8 @@ public class Game implements Runnable {
             public void actionPerformed(ActionEvent e) {
                 String message = "Select a level:";
                 String[] choices = {"Beginner (9 x 9 with 10 bombs)",
-                        "Intermediate (16 x 16 with 40 bombs)", "Expert (22 x 22 with 100 bombs)"};
+                        "Intermediate (16 x 16 with 40 bombs)", "Expert (22 x 22 with 100 bombs)",
+                        "Custom (any number of rows, columns and bombs)"};
                 String level = (String)JOptionPane.showInputDialog(setFrame, message, "Settings",
                         JOptionPane.PLAIN_MESSAGE, null, choices, "Name");
                 // update game size and number of bombs based on user's choice
@@ -118,6 +152,10 @@ public class Game implements Runnable {
                         size = 22;
                         board.setLevel(c);
                     }
+                    if (c == 'C') {
+                        customLevel(setFrame, board);
+                    }
+                    frame.pack();
                 }
             }
         });
@@ -127,22 +165,65 @@ public class Game implements Runnable {
         highscores.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
                 // update all scores
-                highscores();
-                bScores = "<html>" + scores[0] + "<br>" + scores[1] + "<br>" + scores[2] + "<br>"
-                        + scores[3] + "<br>" + scores[4] + "</html>";
-                iScores = "<html>" + scores[5] + "<br>" + scores[6] + "<br>" + scores[7] + "<br>"
-                        + scores[8] + "<br>" + scores[9] + "</html>";
-                eScores = "<html>" + scores[10] + "<br>" + scores[11] + "<br>" + scores[12]
-                        + "<br>" + scores[13] + "<br>" + scores[14] + "</html>";
-                beginner.setText(bScores);
-                intermediate.setText(iScores);
-                expert.setText(eScores);
+                beginner.setText(highscores('B'));
+                intermediate.setText(highscores('I'));
+                expert.setText(highscores('E'));
                 scoreFrame.setVisible(true);
             }
         });
+		
+		// create replay button functionality, which shows a recorded game at a chosen speed
+		final JButton replay = new JButton("Replays");
+		replay.addActionListener(new ActionListener() {
+		    public void actionPerformed(ActionEvent e) {
+		        JFileChooser chooser = new JFileChooser(Board.REPLAY_DIRECTORY);
+		        if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+		            return;
+		        }
+		        String[] speeds = { "1x", "2x", "4x", "10x", "Instant" };
+		        Object speed = JOptionPane.showInputDialog(frame, "Choose a speed:", "Replays",
+		                JOptionPane.PLAIN_MESSAGE, null, speeds, speeds[0]);
+		        if (speed == null) {
+		            return;
+		        }
+		        final java.io.File file = chooser.getSelectedFile();
+		        final double rate = speed.equals("Instant") ? Double.POSITIVE_INFINITY
+		                : Double.parseDouble(((String) speed).replace("x", ""));
+		        
+		        // the file is read in the background, then shown on the event thread
+		        new SwingWorker<Replay, Object>() {
+		            protected Replay doInBackground() throws java.io.IOException {
+		                return Replay.read(file);
+		            }
+		            
+		            protected void done() {
+		                try {
+		                    board.play(get(), rate);
+		                    frame.pack();
+		                } catch (InterruptedException ex) {
+		                    Thread.currentThread().interrupt();
+		                } catch (java.util.concurrent.ExecutionException ex) {
+		                    JOptionPane.showMessageDialog(frame, "Could not read "
+		                            + file.getName() + ": " + ex.getCause().getMessage(),
+		                            "Replays", JOptionPane.ERROR_MESSAGE);
+		                }
+		            }
+		        }.execute();
+		    }
+		});
 		settings_panel.add(instructions);
 		settings_panel.add(settings);
 		settings_panel.add(highscores);
+		settings_panel.add(replay);
+		
+		// create endless button functionality, which shows the endless game
+		final JButton endless = new JButton("Endless");
+		endless.addActionListener(new ActionListener() {
+		    public void actionPerformed(ActionEvent e) {
+		        endlessFrame.setVisible(true);
+		    }
+		});
+		settings_panel.add(endless);
 		
 		// reset button
 		final JPanel control_panel = new JPanel();
@@ -154,6 +235,35 @@ public class Game implements Runnable {
 			}
 		});
 		control_panel.add(reset);
+		
+		// hint button, which outlines a Piece that is safe (or a bomb) without guessing
+		final JButton hint = new JButton("Hint");
+		hint.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+			    board.hint();
+			}
+		});
+		control_panel.add(hint);
+		
+		// undo button, which takes back the last move (for practice; the game's score no longer
+		// counts)
+		final JButton undo = new JButton("Undo");
+		undo.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+			    board.undo();
+			}
+		});
+		control_panel.add(undo);
+		
+		// no guessing check box, which starts a new game that can be won without guessing
+		final JCheckBox noGuess = new JCheckBox("No guessing");
+		noGuess.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+			    board.setNoGuess(noGuess.isSelected());
+			    board.reset();
+			}
+		});
+		control_panel.add(noGuess);
 
 		// put the frame on the screen
 		frame.pack();
@@ -165,27 +275,63 @@ public class Game implements Runnable {
 	}
 	
 	/**
-	 * highscores() reads the game's past high scores from the provided file and updates the Game's
-	 * scores array
+	 * customLevel(JFrame setFrame, Board board) asks the user for a number of rows, columns and
+	 * bombs and resets the board to that size
 	 */
-	public void highscores() {
-	    scores = new String[15];
+	private void customLevel(JFrame setFrame, Board board) {
+	    String message = "Enter the number of rows, columns and bombs (e.g. 16 30 99):";
+	    String input = (String)JOptionPane.showInputDialog(setFrame, message, "Settings",
+	            JOptionPane.PLAIN_MESSAGE, null, null, "16 30 99");
+	    if (input == null) {
+	        return;
+	    }
 	    try {
-            BufferedReader in = new BufferedReader(new FileReader("highscores.txt"));
-            // read first line, which will always be "High Scores"
-            in.readLine();
-            for (int i = 0; i < 15; i++) {
-                // read line that gives the level
-                if (i % 5 == 0) {
-                    in.readLine();
-                }
-                String score = in.readLine();
-                scores[i] = score;
-            }
-            in.close();
-          } catch (IOException e) {
-            System.out.println("error while checking document: " + e.getMessage());
-          }
+	        String[] values = input.trim().split("[\\s,x]+");
+	        int rows = Integer.parseInt(values[0]);
+	        int cols = Integer.parseInt(values[1]);
+	        int numBombs = Integer.parseInt(values[2]);
+	        if (rows < 1 || cols < 1 || numBombs < 0 || (long) rows * cols > 100000000L) {
+	            throw new NumberFormatException();
+	        }
+	        board.setCustom(rows, cols, numBombs);
+	    } catch (RuntimeException e) {
+	        JOptionPane.showMessageDialog(setFrame, "Please enter three whole numbers, with at "
+	                + "most 100,000,000 squares.", "Settings", JOptionPane.PLAIN_MESSAGE);
+	    }
+	}
+	
+	/**
+	 * highscores(char level) returns the fastest games on a level from the leaderboard, formatted
+	 * for a JLabel; the text is only made again when the leaderboard has changed
+	 * 
+	 * @param char level: the level
+	 * @return String scores: the NUM_HIGH_SCORES fastest games, one per line
+	 */
+	private String highscores(char level) {
+	    Leaderboard leaderboard = Board.getLeaderboard();
+	    if (leaderboard != null && leaderboard.version() != scoresVersion) {
+	        scoresCache.clear();
+	        scoresVersion = leaderboard.version();
+	    }
+	    String cached = scoresCache.get(level);
+	    if (cached != null) {
+	        return cached;
+	    }
+	    
+	    Leaderboard.Entry[] top = leaderboard == null ? new Leaderboard.Entry[0]
+	            : leaderboard.top(level, Board.NUM_HIGH_SCORES);
+	    StringBuilder scores = new StringBuilder("<html>");
+	    for (int i = 0; i < Board.NUM_HIGH_SCORES; i++) {
+	        scores.append(i + 1).append(". ");
+	        if (i < top.length) {
+	            String name = top[i].name.replace("&", "&amp;").replace("<", "&lt;");
+	            scores.append(name).append(": ").append(top[i].seconds).append(" seconds");
+	        }
+	        scores.append("<br>");
+	    }
+	    String text = scores.append("</html>").toString();
+	    scoresCache.put(level, text);
+	    return text;
 	}
 
 	/*
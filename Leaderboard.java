@@ -0,0 +1,631 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Leaderboard
+ *
+ * Every won game, stored in a binary file of fixed-size records that is memory-mapped, so adding a
+ * score writes one record in place instead of rewriting the file. For each level there is a sorted
+ * index (counts of games by number of seconds, in a Fenwick tree) kept in memory and rebuilt when
+ * the file is opened; adding a score, finding its rank, and finding the top K scores or the
+ * percentile of a time only take O(log n) steps, however many games have been recorded.
+ *
+ * Any number of processes can add to the same file at once: writers lock the file's header while
+ * they append, and submit() hands games to a background thread that writes them in batches.
+ * refresh() (or watch(), which tells you when to call it) picks up the games other processes
+ * added. The methods may be called from any thread.
+ */
+public class Leaderboard implements Closeable {
+    // file layout: a header, then one record per game in the order they were added
+    private static final int MAGIC = 0x4d534c42; // "MSLB"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int COUNT_OFFSET = 8;
+
+    // record layout: level (char), name length (short), seconds (int), time recorded (long), name
+    private static final int RECORD_SIZE = 64;
+    private static final int LEVEL_OFFSET = 0;
+    private static final int NAME_LENGTH_OFFSET = 2;
+    private static final int SECONDS_OFFSET = 4;
+    private static final int TIME_OFFSET = 8;
+    private static final int NAME_OFFSET = 16;
+    public static final int MAX_NAME_LENGTH = (RECORD_SIZE - NAME_OFFSET) / 2;
+
+    // times longer than this are ranked as if they were this long
+    public static final int MAX_SECONDS = (1 << 17) - 1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Path path;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private MappedByteBuffer map;
+    private int capacity;
+    private int count;
+
+    // changes whenever a game is added, so that users can tell when to update what they show
+    private int version;
+
+    // watches the file for changes made by other processes; see watch()
+    private WatchService watcher;
+
+    // games waiting to be written by the writer thread, and the entry that tells it to stop; see
+    // submit(). Once closed (guarded by submitted) no more games are taken.
+    private final BlockingQueue<Entry> submitted = new LinkedBlockingQueue<Entry>();
+    private Thread writer;
+    private boolean closed;
+    private static final Entry CLOSE = new Entry('\0', "", 0, 0);
+
+    // next[i] is the record after record i with the same level and number of seconds, or -1
+    private int[] next;
+    private final Map<Character, Index> indexes = new HashMap<Character, Index>();
+
+    /**
+     * Entry
+     *
+     * One recorded game
+     */
+    public static class Entry {
+        public final char level;
+        public final String name;
+        public final int seconds;
+        public final long time;
+
+        Entry(char level, String name, int seconds, long time) {
+            this.level = level;
+            this.name = name;
+            this.seconds = seconds;
+            this.time = time;
+        }
+    }
+
+    /**
+     * Index
+     *
+     * The games of one level sorted by number of seconds: how many games took each number of
+     * seconds (in a Fenwick tree, so that the number that took less than any time can be found
+     * quickly), and a list of the records for each number of seconds in the order they were added
+     */
+    private static class Index {
+        private static final int NUM_BUCKETS = MAX_SECONDS + 1;
+
+        private int size;
+        private final int[] tree = new int[NUM_BUCKETS + 1];
+        private final int[] head = new int[NUM_BUCKETS];
+        private final int[] tail = new int[NUM_BUCKETS];
+
+        Index() {
+            Arrays.fill(head, -1);
+            Arrays.fill(tail, -1);
+        }
+
+        /**
+         * add(int bucket, int record, int[] next) adds a record to the end of a bucket's list
+         */
+        void add(int bucket, int record, int[] next) {
+            next[record] = -1;
+            if (tail[bucket] == -1) {
+                head[bucket] = record;
+            } else {
+                next[tail[bucket]] = record;
+            }
+            tail[bucket] = record;
+
+            for (int i = bucket + 1; i <= NUM_BUCKETS; i += i & -i) {
+                tree[i]++;
+            }
+            size++;
+        }
+
+        /**
+         * countBelow(int bucket) returns the number of games that took less than bucket seconds
+         */
+        int countBelow(int bucket) {
+            int sum = 0;
+            for (int i = bucket; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+
+        /**
+         * find(int rank) returns the bucket holding the game with the given rank (0 is fastest);
+         * rank must be less than size
+         */
+        int find(int rank) {
+            int bucket = 0;
+            for (int step = Integer.highestOneBit(NUM_BUCKETS); step > 0; step >>= 1) {
+                if (bucket + step <= NUM_BUCKETS && tree[bucket + step] <= rank) {
+                    bucket += step;
+                    rank -= tree[bucket];
+                }
+            }
+            return bucket;
+        }
+    }
+
+    /**
+     * constructor opens the leaderboard in the given file, creating the file if it does not exist
+     *
+     * @param String fileName: the name of the leaderboard file
+     */
+    public Leaderboard(String fileName) throws IOException {
+        path = Paths.get(fileName).toAbsolutePath();
+        file = new RandomAccessFile(fileName, "rw");
+        channel = file.getChannel();
+        try {
+            // another process may be creating the file too, so only one writes the header
+            synchronized (Leaderboard.class) {
+                FileLock lock = channel.lock(0, HEADER_SIZE, false);
+                try {
+                    if (channel.size() == 0) {
+                        map(INITIAL_CAPACITY);
+                        map.putInt(0, MAGIC);
+                        map.putInt(4, VERSION);
+                        map.putInt(COUNT_OFFSET, 0);
+                    }
+                } finally {
+                    lock.release();
+                }
+            }
+            if (map == null) {
+                if (channel.size() < HEADER_SIZE) {
+                    throw new IOException(fileName + " is not a leaderboard file");
+                }
+                map((int) ((channel.size() - HEADER_SIZE) / RECORD_SIZE));
+                if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+                    throw new IOException(fileName + " is not a leaderboard file");
+                }
+                count = Math.min(map.getInt(COUNT_OFFSET), capacity);
+            }
+
+            // rebuild the indexes
+            next = new int[Math.max(capacity, INITIAL_CAPACITY)];
+            indexRecords(0, count);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * indexRecords(int from, int to) adds the records from from (inclusive) to to (exclusive) to
+     * the indexes
+     */
+    private void indexRecords(int from, int to) {
+        if (to > next.length) {
+            next = Arrays.copyOf(next, Math.max(to, 2 * next.length));
+        }
+        for (int i = from; i < to; i++) {
+            int position = HEADER_SIZE + i * RECORD_SIZE;
+            index(map.getChar(position + LEVEL_OFFSET))
+                    .add(bucket(map.getInt(position + SECONDS_OFFSET)), i, next);
+        }
+    }
+
+    /**
+     * refresh() adds the games that other processes have added to the file since it was opened or
+     * last refreshed; only the new records are read
+     *
+     * @return boolean changed: true if there were new games
+     */
+    public synchronized boolean refresh() throws IOException {
+        int newCount = map.getInt(COUNT_OFFSET);
+        if (newCount == count) {
+            return false;
+        }
+        if (newCount > capacity) {
+            map((int) ((channel.size() - HEADER_SIZE) / RECORD_SIZE));
+            newCount = Math.min(newCount, capacity);
+        }
+        if (newCount < count) {
+            // the file was replaced, so start over
+            indexes.clear();
+            count = 0;
+        }
+        indexRecords(count, newCount);
+        count = newCount;
+        version++;
+        return true;
+    }
+
+    /**
+     * watch(Runnable onChange) starts a background thread that runs onChange whenever the file is
+     * changed (by this or another process), until the leaderboard is closed; onChange runs on the
+     * background thread, and would usually arrange for refresh() to be called
+     *
+     * @param Runnable onChange: what to do when the file changes
+     */
+    public void watch(final Runnable onChange) throws IOException {
+        if (watcher != null) {
+            return;
+        }
+        watcher = FileSystems.getDefault().newWatchService();
+        path.getParent().register(watcher, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_CREATE);
+        final WatchService service = watcher;
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    while (true) {
+                        WatchKey key = service.take();
+                        boolean changed = false;
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            if (path.getFileName().equals(event.context())) {
+                                changed = true;
+                            }
+                        }
+                        key.reset();
+                        if (changed) {
+                            onChange.run();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (ClosedWatchServiceException e) {
+                    return;
+                }
+            }
+        }, "leaderboard watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * version() returns a number that changes whenever games are added, so that anything shown
+     * from the leaderboard only needs to be updated when it changes
+     *
+     * @return int version: the leaderboard's version
+     */
+    public synchronized int version() {
+        return version;
+    }
+
+    /**
+     * map(int records) maps the header and the given number of records of the file into memory,
+     * making the file larger if needed
+     */
+    private void map(int records) throws IOException {
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_SIZE + (long) records * RECORD_SIZE);
+        capacity = records;
+    }
+
+    /**
+     * index(char level) returns the index of the given level, creating it if needed
+     */
+    private Index index(char level) {
+        Index index = indexes.get(level);
+        if (index == null) {
+            index = new Index();
+            indexes.put(level, index);
+        }
+        return index;
+    }
+
+    /**
+     * bucket(int seconds) returns the bucket a time is ranked in
+     */
+    private static int bucket(int seconds) {
+        return Math.max(0, Math.min(seconds, MAX_SECONDS));
+    }
+
+    /**
+     * add(char level, String name, int seconds) records a won game, writing one record at the end
+     * of the file, and returns the game's rank on its level (0 is the fastest; a game ranks below
+     * earlier games with the same time)
+     *
+     * @param char level: the level the game was played at
+     * @param String name: the player's name (only the first MAX_NAME_LENGTH characters are kept)
+     * @param int seconds: how long the game took
+     * @return int rank: the game's rank
+     */
+    public int add(char level, String name, int seconds) throws IOException {
+        Entry entry = new Entry(level, name, seconds, System.currentTimeMillis());
+        commit(Collections.singletonList(entry));
+        synchronized (this) {
+            return rank(level, seconds) - 1;
+        }
+    }
+
+    /**
+     * submit(char level, String name, int seconds) records a won game like add(), but without
+     * waiting: the game is written by a background thread, along with any other games submitted
+     * while it was busy, and is seen by the other methods once it has been written. Games
+     * submitted after close() are not recorded.
+     *
+     * @param char level: the level the game was played at
+     * @param String name: the player's name (only the first MAX_NAME_LENGTH characters are kept)
+     * @param int seconds: how long the game took
+     * @return boolean: true if the game will be written, false if the leaderboard is closed
+     */
+    public boolean submit(char level, String name, int seconds) {
+        Entry entry = new Entry(level, name, seconds, System.currentTimeMillis());
+        synchronized (submitted) {
+            if (closed) {
+                System.out.println("error while recording high score: the leaderboard is closed");
+                return false;
+            }
+            if (writer == null) {
+                writer = new Thread(new Runnable() {
+                    public void run() {
+                        write();
+                    }
+                }, "leaderboard writer");
+                // it never keeps the program running: close() (which Board calls from a shutdown
+                // hook) writes whatever is still waiting
+                writer.setDaemon(true);
+                writer.start();
+            }
+            // added while holding the lock, so that nothing is added after close()'s CLOSE
+            submitted.add(entry);
+        }
+        return true;
+    }
+
+    /**
+     * write() writes the submitted games in batches until the leaderboard is closed; run by the
+     * writer thread
+     */
+    private void write() {
+        List<Entry> batch = new ArrayList<Entry>();
+        boolean closing = false;
+        while (!closing) {
+            try {
+                batch.add(submitted.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            submitted.drainTo(batch);
+            closing = batch.remove(CLOSE);
+            try {
+                commit(batch);
+            } catch (IOException e) {
+                System.out.println("error while recording high scores: " + e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * commit(List<Entry> batch) writes games to the end of the file. The file is locked while the
+     * records and the new count are written, so that games added by other processes at the same
+     * time are never overwritten: any games they have added are indexed first, then this batch
+     * goes after them.
+     */
+    private void commit(List<Entry> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // a process can only hold one lock on a part of a file, so Leaderboards in the same
+        // process take turns before locking
+        synchronized (Leaderboard.class) {
+            FileLock lock = channel.lock(0, HEADER_SIZE, false);
+            try {
+                synchronized (this) {
+                    refresh();
+                    for (Entry entry : batch) {
+                        append(entry);
+                    }
+                    // the count is written last, so that a half-written record is never read; it
+                    // is written through the channel rather than the map because only writes
+                    // through the file system show up for processes watching the file
+                    ByteBuffer newCount = ByteBuffer.allocate(4);
+                    newCount.putInt(0, count);
+                    channel.write(newCount, COUNT_OFFSET);
+                    version++;
+                }
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * append(Entry entry) writes a record after the last one and indexes it, without changing the
+     * count in the file
+     */
+    private void append(Entry entry) throws IOException {
+        if (count == capacity) {
+            map(capacity * 2);
+        }
+        if (count == next.length) {
+            next = Arrays.copyOf(next, capacity);
+        }
+
+        int position = HEADER_SIZE + count * RECORD_SIZE;
+        int length = Math.min(entry.name.length(), MAX_NAME_LENGTH);
+        map.putChar(position + LEVEL_OFFSET, entry.level);
+        map.putShort(position + NAME_LENGTH_OFFSET, (short) length);
+        map.putInt(position + SECONDS_OFFSET, entry.seconds);
+        map.putLong(position + TIME_OFFSET, entry.time);
+        for (int i = 0; i < length; i++) {
+            map.putChar(position + NAME_OFFSET + 2 * i, entry.name.charAt(i));
+        }
+
+        index(entry.level).add(bucket(entry.seconds), count, next);
+        count++;
+    }
+
+    /**
+     * rank(char level, int seconds) returns the rank a game that took the given time would have if
+     * it were added (0 is the fastest)
+     *
+     * @param char level: the level the game was played at
+     * @param int seconds: how long the game took
+     * @return int rank: the number of recorded games at least as fast
+     */
+    public synchronized int rank(char level, int seconds) {
+        Index index = indexes.get(level);
+        return index == null ? 0 : index.countBelow(bucket(seconds) + 1);
+    }
+
+    /**
+     * percentile(char level, int seconds) returns the percentage of recorded games on a level that
+     * took longer than the given time
+     *
+     * @param char level: the level
+     * @param int seconds: the time to compare with
+     * @return int percentile: between 0 and 100 (0 if no games have been recorded)
+     */
+    public synchronized int percentile(char level, int seconds) {
+        Index index = indexes.get(level);
+        if (index == null || index.size == 0) {
+            return 0;
+        }
+        long slower = index.size - index.countBelow(bucket(seconds) + 1);
+        return (int) (slower * 100 / index.size);
+    }
+
+    /**
+     * top(char level, int k) returns the k fastest games on a level, fastest first
+     *
+     * @param char level: the level
+     * @param int k: the number of games
+     * @return Entry[] top: the games (fewer than k if fewer have been recorded)
+     */
+    public synchronized Entry[] top(char level, int k) {
+        Index index = indexes.get(level);
+        if (index == null) {
+            return new Entry[0];
+        }
+        Entry[] top = new Entry[Math.min(k, index.size)];
+        int found = 0;
+        while (found < top.length) {
+            int bucket = index.find(found);
+            for (int i = index.head[bucket]; i != -1 && found < top.length; i = next[i]) {
+                top[found++] = get(i);
+            }
+        }
+        return top;
+    }
+
+    /**
+     * size(char level) returns the number of games recorded on a level
+     *
+     * @param char level: the level
+     * @return int size: the number of games
+     */
+    public synchronized int size(char level) {
+        Index index = indexes.get(level);
+        return index == null ? 0 : index.size;
+    }
+
+    /**
+     * size() returns the number of games recorded on all levels
+     *
+     * @return int count: the number of games
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * get(int record) reads a record from the file
+     */
+    private Entry get(int record) {
+        int position = HEADER_SIZE + record * RECORD_SIZE;
+        int length = map.getShort(position + NAME_LENGTH_OFFSET);
+        char[] name = new char[length];
+        for (int i = 0; i < length; i++) {
+            name[i] = map.getChar(position + NAME_OFFSET + 2 * i);
+        }
+        return new Entry(map.getChar(position + LEVEL_OFFSET), new String(name),
+                map.getInt(position + SECONDS_OFFSET), map.getLong(position + TIME_OFFSET));
+    }
+
+    /**
+     * importText(String fileName) adds the scores from a high scores text file in the old format
+     * (a "High Scores" line, then for each level a line starting with the level's letter followed
+     * by lines like "1. name: 12 seconds")
+     *
+     * @param String fileName: the name of the text file
+     */
+    public void importText(String fileName) throws IOException {
+        BufferedReader in = new BufferedReader(new FileReader(fileName));
+        List<Entry> games = new ArrayList<Entry>();
+        try {
+            // the first line is always "High Scores"
+            String line = in.readLine();
+            char level = 0;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (!Character.isDigit(line.charAt(0))) {
+                    level = line.charAt(0);
+                    continue;
+                }
+                int start = line.indexOf(':');
+                int end = line.indexOf(' ', start + 2);
+                if (start == -1 || end == -1 || level == 0) {
+                    continue;
+                }
+                try {
+                    int seconds = Integer.parseInt(line.substring(start + 1, end).trim());
+                    String name = line.substring(line.indexOf('.') + 1, start).trim();
+                    games.add(new Entry(level, name, seconds, 0));
+                } catch (NumberFormatException e) {
+                    System.out.println("error while importing high score: " + line);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        commit(games);
+    }
+
+    /**
+     * close() writes any changes to the disk and closes the file; calling it again does nothing
+     */
+    public void close() throws IOException {
+        Thread last;
+        synchronized (submitted) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            last = writer;
+            if (last != null) {
+                submitted.add(CLOSE);
+            }
+        }
+        if (watcher != null) {
+            watcher.close();
+        }
+        // let the writer finish the games that have been submitted (without holding the lock, so
+        // that a submit() meanwhile is turned away rather than kept waiting)
+        if (last != null) {
+            try {
+                last.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        map.force();
+        file.close();
+    }
+}
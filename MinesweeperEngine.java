@@ -0,0 +1,1199 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * MinesweeperEngine
+ *
+ * The rules of the game (bomb placement, revealing Pieces, flagging, and checking for a win or a
+ * loss) with no dependency on AWT or Swing, so that games can be played headlessly (for example by
+ * bots, or with java.awt.headless=true). Board is a view over an engine.
+ */
+public class MinesweeperEngine {
+    /**
+     * Status of a game: still being played, won, or lost
+     */
+    public enum Status { PLAYING, WON, LOST }
+
+    // the actions of a move for applyBatch(), stored in its low ACTION_BITS bits below the Piece
+    public static final int REVEAL = 0;
+    public static final int FLAG = 1;
+    public static final int CHORD = 2;
+    public static final int ACTION_BITS = 2;
+
+    // the move array used by chord()
+    private final int[] batch = new int[1];
+
+    private int numRows;
+    private int numCols;
+    private int numBombs;
+
+    // the seed the current board's bombs are placed with, and the generator for new seeds
+    private long seed;
+    // bombs are only placed on the first reveal, so that the first Piece revealed is never a bomb
+    private boolean bombsAssigned;
+    private final SplittableRandom seeds = new SplittableRandom();
+    // the amount a SplittableRandom made from a seed adds to its state for each number
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    // cell state as packed bitsets, one bit per Piece at index row * numCols + col. The arrays
+    // are kept from game to game and only replaced when a bigger board needs more than they hold,
+    // so only the first words of them are in use and the rest are always 0
+    private long[] bombs;
+    private long[] revealed;
+    private long[] flagged;
+    private int words;
+
+    // number of adjacent bombs for every cell, two cells (4 bits each) per byte; found once when
+    // the bombs are assigned (kept like the bitsets, with the first countBytes in use)
+    private byte[] counts;
+    private int countBytes;
+
+    // rows of bombs and the bit-sliced sum used by countBombs(), kept for the next game
+    private long[] above;
+    private long[] middle;
+    private long[] below;
+    private final long[] sum = new long[4];
+
+    // worklist for revealing Pieces; after a reveal it also holds the list of newly revealed
+    // cells. It starts small and grows as needed, and once the list passes MAX_REVEALED_LIST cells
+    // it stops being kept and only the cells still to be visited are, so even revealing a huge
+    // open board never needs an int for every Piece
+    private int[] queue;
+    private boolean revealedListComplete;
+    private int numRevealedCells;
+
+    // after undo(), the queue instead holds the cells it changed, unless there were more than
+    // MAX_REVEALED_LIST of them
+    private boolean undoneListComplete;
+    private int numUndoneCells;
+    private static final int INITIAL_QUEUE = 1024;
+    private static final int MAX_REVEALED_LIST = 1 << 20;
+
+    // when the list of revealed cells is not kept, the numbers next to them are (the edge of the
+    // opening, and numbers already revealed that it reached), each once (listed marks the ones in
+    // boundary), unless there are more than MAX_REVEALED_LIST of them
+    private int[] boundary;
+    private long[] listed;
+    private int numBoundaryCells;
+    private boolean boundaryComplete;
+
+    // running counts, updated on every change so that no move needs to scan the board
+    private int flagsPlaced;
+    private int correctFlags;
+    private int safeRevealed;
+
+    private Status status = Status.PLAYING;
+
+    // times (from System.nanoTime) of the first move and of the end of the game
+    private long startTime;
+    private long endTime;
+    private boolean timeStarted = false;
+
+    // for undo(): while there are snapshots, the first change to each word of the revealed or
+    // flagged bitsets after the last snapshot is logged in the trail as two longs (the word's
+    // index, with 1 in the low bit for flagged, then its old value). A snapshot only saves the
+    // counters and the size of the trail, so taking one is O(1), it costs memory only for the
+    // words changed after it, and undoing puts back just those words. The trail and snapshots are
+    // kept for the next game.
+    private long[] trail = new long[INITIAL_TRAIL];
+    private int trailSize;
+    private Snapshot[] snapshots = new Snapshot[INITIAL_SNAPSHOTS];
+    private int numSnapshots;
+
+    // the id of the snapshot each word was last logged for (at index w << 1 | 1 for flagged), so
+    // that a word is logged once per snapshot however many of its Pieces change (made when the
+    // first snapshot is taken); ids are never reused
+    private int[] logged;
+    private int snapshotId;
+    private int lastSnapshotId;
+    private static final int INITIAL_TRAIL = 256;
+    private static final int INITIAL_SNAPSHOTS = 16;
+
+    /**
+     * Snapshot
+     *
+     * The state of a game other than its bitsets, saved by snapshot()
+     */
+    private static class Snapshot {
+        int id;
+        int trailSize;
+        int flagsPlaced;
+        int correctFlags;
+        int safeRevealed;
+        Status status;
+        long startTime;
+        long endTime;
+        boolean timeStarted;
+        boolean bombsAssigned;
+    }
+
+    /**
+     * constructor sets the engine's number of pieces (on one side of the square grid) and number of
+     * bombs using the given values; the bombs are assigned when the first Piece is revealed
+     */
+    public MinesweeperEngine(int numPieces, int numBombs) {
+        reset(numPieces, numBombs);
+    }
+
+    /**
+     * constructor sets the engine's size (on one side of the square grid), number of bombs, and the
+     * seed the bombs will be placed with; the same seed and first reveal always give the same board
+     */
+    public MinesweeperEngine(int numPieces, int numBombs, long seed) {
+        reset(numPieces, numPieces, numBombs, seed);
+    }
+
+    /**
+     * constructor sets the engine's number of rows and columns, number of bombs, and seed using
+     * the given values, for boards that are not square
+     */
+    public MinesweeperEngine(int numRows, int numCols, int numBombs, long seed) {
+        reset(numRows, numCols, numBombs, seed);
+    }
+
+    /**
+     * reset(int numPieces, int numBombs) starts a new game on a square board with the given size
+     * and number of bombs and a new random seed
+     *
+     * @param int numPieces: the number of pieces on one side of the grid
+     * @param int numBombs: the number of bombs to place
+     */
+    public void reset(int numPieces, int numBombs) {
+        reset(numPieces, numPieces, numBombs, seeds.nextLong());
+    }
+
+    /**
+     * reset(int numRows, int numCols, int numBombs) starts a new game with the given number of
+     * rows, columns, and bombs and a new random seed
+     *
+     * @param int numRows: the number of rows of pieces
+     * @param int numCols: the number of columns of pieces
+     * @param int numBombs: the number of bombs to place
+     */
+    public void reset(int numRows, int numCols, int numBombs) {
+        reset(numRows, numCols, numBombs, seeds.nextLong());
+    }
+
+    /**
+     * reset(int numRows, int numCols, int numBombs, long seed) starts a new game with the given
+     * number of rows, columns, and bombs, placing the bombs using the given seed. The board's
+     * arrays are cleared and reused unless the new board is bigger than any before it, so starting
+     * new games of the same size allocates nothing.
+     *
+     * @param int numRows: the number of rows of pieces
+     * @param int numCols: the number of columns of pieces
+     * @param int numBombs: the number of bombs to place (at most one per Piece)
+     * @param long seed: the seed for placing the bombs
+     */
+    public void reset(int numRows, int numCols, int numBombs, long seed) {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        int cells = numRows * numCols;
+        this.numBombs = Math.min(numBombs, cells);
+        this.seed = seed;
+        int words = (cells + 63) >>> 6;
+        if (bombs == null || bombs.length < words) {
+            bombs = new long[words];
+            revealed = new long[words];
+            flagged = new long[words];
+        } else {
+            // only the words of the last game can be set
+            Arrays.fill(bombs, 0, this.words, 0L);
+            Arrays.fill(revealed, 0, this.words, 0L);
+            Arrays.fill(flagged, 0, this.words, 0L);
+        }
+        this.words = words;
+        int countBytes = (cells + 1) >>> 1;
+        if (counts == null || counts.length < countBytes) {
+            counts = new byte[countBytes];
+        } else {
+            Arrays.fill(counts, 0, this.countBytes, (byte) 0);
+        }
+        this.countBytes = countBytes;
+        // the worklist keeps whatever size it has grown to
+        if (queue == null || queue.length < Math.min(cells, INITIAL_QUEUE)) {
+            queue = new int[Math.min(cells, INITIAL_QUEUE)];
+        }
+        flagsPlaced = 0;
+        correctFlags = 0;
+        safeRevealed = 0;
+        status = Status.PLAYING;
+        timeStarted = false;
+        bombsAssigned = false;
+        trailSize = 0;
+        numSnapshots = 0;
+    }
+
+    /**
+     * reset() starts a new game with the same size and number of bombs
+     */
+    public void reset() {
+        reset(numRows, numCols, numBombs, seeds.nextLong());
+    }
+
+    /**
+     * assignBombs(int start) randomly assigns exactly numBombs bombs to the pieces using the board's
+     * seed, keeping them away from the first Piece revealed and its neighbours (or, if there are
+     * too many bombs for that, just away from the first Piece).
+     * This is selection sampling: each allowed Piece in turn gets a bomb with probability (bombs
+     * still to place) / (allowed Pieces left), which places exactly numBombs bombs, each layout
+     * equally likely, in one pass over the board no matter how many bombs there are.
+     *
+     * The random numbers are the same as new SplittableRandom(seed).nextDouble() would give, but
+     * are worked out inline (see nextDouble()) so that placing the bombs allocates nothing.
+     *
+     * Package-private so that the benchmarks in bench/ can time it on its own.
+     *
+     * @param int start: the cell of the first Piece revealed
+     */
+    void assignBombs(int start) {
+        long random = seed;
+        int cells = numRows * numCols;
+        int startRow = start / numCols;
+        int startCol = start % numCols;
+
+        // Pieces the bombs must stay away from
+        int minRow = Math.max(0, startRow - 1);
+        int maxRow = Math.min(numRows - 1, startRow + 1);
+        int minCol = Math.max(0, startCol - 1);
+        int maxCol = Math.min(numCols - 1, startCol + 1);
+        int excluded = (maxRow - minRow + 1) * (maxCol - minCol + 1);
+        if (numBombs > cells - excluded) {
+            minRow = startRow;
+            maxRow = startRow;
+            minCol = startCol;
+            maxCol = startCol;
+            excluded = 1;
+        }
+        if (numBombs > cells - excluded) {
+            // every Piece has a bomb
+            maxRow = -1;
+            excluded = 0;
+        }
+        int allowed = cells - excluded;
+
+        int needed = numBombs;
+        for (int row = 0; row < numRows && needed > 0; row++) {
+            boolean nearStart = row >= minRow && row <= maxRow;
+            for (int col = 0, cell = row * numCols; col < numCols && needed > 0; col++, cell++) {
+                if (nearStart && col >= minCol && col <= maxCol) {
+                    continue;
+                }
+                random += GOLDEN_GAMMA;
+                if (nextDouble(random) * allowed < needed) {
+                    set(bombs, cell);
+                    needed--;
+                }
+                allowed--;
+            }
+        }
+
+        // flags may have been placed before the bombs were
+        correctFlags = 0;
+        for (int w = 0; w < words; w++) {
+            correctFlags += Long.bitCount(flagged[w] & bombs[w]);
+        }
+
+        countBombs();
+        bombsAssigned = true;
+    }
+
+    /**
+     * placeBombs(int row, int col) places the bombs now, as if the Piece at the given position
+     * were the first one revealed (so a game can show where it was meant to start before the
+     * first click); does nothing if the bombs are already placed
+     *
+     * @param int row: the row of the first Piece
+     * @param int col: the column of the first Piece
+     */
+    public void placeBombs(int row, int col) {
+        if (!bombsAssigned) {
+            assignBombs(row * numCols + col);
+        }
+    }
+
+    /**
+     * nextDouble(long state) returns the random double in [0, 1) for the given state of a
+     * SplittableRandom (its seed after adding GOLDEN_GAMMA), mixed the same way SplittableRandom
+     * does
+     */
+    private static double nextDouble(long state) {
+        long z = (state ^ (state >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return ((z ^ (z >>> 31)) >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * countBombs() finds the number of adjacent bombs for every Piece at once and stores it in the
+     * counts array. Each row of bombs is copied into its own row-aligned words, and the eight
+     * neighbours of 64 Pieces at a time are added up with shifts and a bit-sliced adder (four
+     * words holding bits 0 to 3 of each Piece's count), so the bombs are never checked one by one.
+     */
+    private void countBombs() {
+        int rows = numRows;
+        int cols = numCols;
+        int rowWords = (cols + 63) >>> 6;
+        // (the rows must be exactly rowWords long, since east() looks at the next word)
+        if (above == null || above.length != rowWords) {
+            above = new long[rowWords];
+            middle = new long[rowWords];
+            below = new long[rowWords];
+        }
+        long[] above = this.above;
+        long[] middle = this.middle;
+        long[] below = this.below;
+        long[] sum = this.sum;
+        Arrays.fill(above, 0L);
+
+        copyRow(0, cols, middle);
+        for (int r = 0; r < rows; r++) {
+            if (r + 1 < rows) {
+                copyRow((r + 1) * cols, cols, below);
+            } else {
+                Arrays.fill(below, 0L);
+            }
+
+            for (int w = 0; w < rowWords; w++) {
+                sum[0] = 0;
+                sum[1] = 0;
+                sum[2] = 0;
+                sum[3] = 0;
+                add(sum, west(above, w));
+                add(sum, above[w]);
+                add(sum, east(above, w));
+                add(sum, west(middle, w));
+                add(sum, east(middle, w));
+                add(sum, west(below, w));
+                add(sum, below[w]);
+                add(sum, east(below, w));
+
+                // store each Piece's 4-bit count
+                int first = r * cols + (w << 6);
+                int n = Math.min(64, cols - (w << 6));
+                for (int j = 0; j < n; j++) {
+                    int count = (int) ((sum[0] >>> j) & 1) | (int) ((sum[1] >>> j) & 1) << 1
+                            | (int) ((sum[2] >>> j) & 1) << 2 | (int) ((sum[3] >>> j) & 1) << 3;
+                    int cell = first + j;
+                    counts[cell >>> 1] |= count << ((cell & 1) << 2);
+                }
+            }
+
+            long[] temp = above;
+            above = middle;
+            middle = below;
+            below = temp;
+        }
+    }
+
+    /**
+     * copyRow(int start, int length, long[] row) copies length bits of the bombs bitset, starting
+     * at the given cell, into row so that the row's first cell is bit 0 of row[0]
+     */
+    private void copyRow(int start, int length, long[] row) {
+        for (int w = 0; w < row.length; w++) {
+            int bit = start + (w << 6);
+            int index = bit >>> 6;
+            int offset = bit & 63;
+            long word = bombs[index] >>> offset;
+            if (offset != 0 && index + 1 < bombs.length) {
+                word |= bombs[index + 1] << (64 - offset);
+            }
+            int remaining = length - (w << 6);
+            if (remaining < 64) {
+                word &= (1L << remaining) - 1;
+            }
+            row[w] = word;
+        }
+    }
+
+    /**
+     * west(long[] row, int w) returns word w of the row shifted so that each bit holds the value of
+     * the Piece to its left
+     */
+    private static long west(long[] row, int w) {
+        long word = row[w] << 1;
+        if (w > 0) {
+            word |= row[w - 1] >>> 63;
+        }
+        return word;
+    }
+
+    /**
+     * east(long[] row, int w) returns word w of the row shifted so that each bit holds the value of
+     * the Piece to its right
+     */
+    private static long east(long[] row, int w) {
+        long word = row[w] >>> 1;
+        if (w + 1 < row.length) {
+            word |= row[w + 1] << 63;
+        }
+        return word;
+    }
+
+    /**
+     * add(long[] sum, long bits) adds one bit to each of 64 4-bit counters, where sum[k] holds bit
+     * k of every counter
+     */
+    private static void add(long[] sum, long bits) {
+        long carry = sum[0] & bits;
+        sum[0] ^= bits;
+        long carry2 = sum[1] & carry;
+        sum[1] ^= carry;
+        long carry3 = sum[2] & carry2;
+        sum[2] ^= carry2;
+        sum[3] |= carry3;
+    }
+
+    /**
+     * reveal(int row, int col) reveals the Piece at the given position (as a left click would); if
+     * it has a bomb the game is lost, otherwise the number of adjacent bombs is found and any
+     * surrounding Pieces with no adjacent bombs are revealed as well. The newly revealed cells
+     * (as row * numCols + col) are available from getRevealedCells() afterwards.
+     *
+     * @param int row: the row of the Piece to reveal
+     * @param int col: the column of the Piece to reveal
+     * @return int: the number of newly revealed Pieces (0 if the board did not change)
+     */
+    public int reveal(int row, int col) {
+        int cell = row * numCols + col;
+        numRevealedCells = 0;
+        boundaryComplete = false;
+        if (status != Status.PLAYING || get(flagged, cell) || get(revealed, cell)) {
+            return 0;
+        }
+        startTime();
+        if (!bombsAssigned) {
+            assignBombs(cell);
+        }
+
+        if (get(bombs, cell)) {
+            log(cell >>> 6, 0);
+            set(revealed, cell);
+            queue[0] = cell;
+            revealedListComplete = true;
+            numRevealedCells = 1;
+            endGame(Status.LOST);
+            return 1;
+        }
+        int n = getNumbers(cell);
+        safeRevealed += n;
+        numRevealedCells = n;
+        checkWin();
+        return n;
+    }
+
+    /**
+     * chord(int row, int col) reveals every unflagged neighbour of a revealed Piece whose number
+     * of adjacent bombs equals the number of flags around it (as clicking on a number does); if a
+     * flag is wrong, that reveals a bomb and the game is lost
+     *
+     * @param int row: the row of the revealed Piece
+     * @param int col: the column of the revealed Piece
+     * @return int: the number of newly revealed Pieces (0 if the board did not change)
+     */
+    public int chord(int row, int col) {
+        batch[0] = move(row * numCols + col, CHORD);
+        return applyBatch(batch, 1);
+    }
+
+    /**
+     * move(int cell, int action) returns a move for applyBatch()
+     *
+     * @param int cell: the Piece (as row * numCols + col)
+     * @param int action: REVEAL, FLAG (which flags or unflags the Piece) or CHORD
+     * @return int move: the move
+     */
+    public static int move(int cell, int action) {
+        return cell << ACTION_BITS | action;
+    }
+
+    /**
+     * applyBatch(int[] moves, int n) makes many moves at once, as one gesture (such as a chord) or
+     * a bot's turn: the Pieces to reveal are marked in order, and a single flood fill reveals
+     * around all of them at the end. A flag, a chord or a bomb may depend on what the moves before
+     * it reveal, so the flood of those moves is finished first; the result is always the same as
+     * making the moves one by one. Moves that are not allowed (such as revealing a flagged Piece)
+     * are skipped, and the batch ends when the game is won or lost. The newly revealed cells are
+     * available from getRevealedCells() afterwards, and their number from getNumRevealedCells().
+     *
+     * @param int[] moves: the moves, made with move() (the Piece must be below 2^29)
+     * @param int n: the number of moves to make, from the start of the array
+     * @return int: the number of Pieces changed (revealed, flagged or unflagged)
+     */
+    public int applyBatch(int[] moves, int n) {
+        return applyBatch(moves, 0, n);
+    }
+
+    /**
+     * applyBatch(int[] moves, int from, int to) makes the moves from index from up to (not
+     * including) index to at once; see applyBatch(int[] moves, int n)
+     *
+     * @return int: the number of Pieces changed (revealed, flagged or unflagged)
+     */
+    public int applyBatch(int[] moves, int from, int to) {
+        numRevealedCells = 0;
+        boundaryComplete = false;
+        if (status != Status.PLAYING) {
+            return 0;
+        }
+        int cells = numRows * numCols;
+        revealedListComplete = true;
+        // Pieces revealed so far; queue[first] to queue[tail - 1] are marked revealed and wait for
+        // the flood fill
+        int count = 0;
+        int first = 0;
+        int tail = 0;
+        int toggled = 0;
+        int lost = -1;
+        for (int m = from; m < to && lost == -1 && status == Status.PLAYING; m++) {
+            int cell = moves[m] >>> ACTION_BITS;
+            int action = moves[m] & ((1 << ACTION_BITS) - 1);
+            if (cell >= cells) {
+                continue;
+            }
+            if (tail > first && (action != REVEAL || get(bombs, cell))) {
+                int flooded = flood(first, tail - first);
+                count += flooded;
+                safeRevealed += flooded;
+                first = tail = revealedListComplete ? count : 0;
+                checkWin();
+                if (status != Status.PLAYING) {
+                    break;
+                }
+            }
+            if (action == FLAG) {
+                if (get(revealed, cell)) {
+                    continue;
+                }
+                startTime();
+                log(cell >>> 6, 1);
+                flagged[cell >>> 6] ^= 1L << cell;
+                int change = get(flagged, cell) ? 1 : -1;
+                flagsPlaced += change;
+                if (get(bombs, cell)) {
+                    correctFlags += change;
+                }
+                toggled++;
+                checkWin();
+                continue;
+            }
+
+            // the Pieces to reveal: the one clicked, or a satisfied number's neighbours
+            int row = cell / numCols;
+            int col = cell - row * numCols;
+            int firstRow = row;
+            int lastRow = row;
+            int firstCol = col;
+            int lastCol = col;
+            if (action == CHORD) {
+                if (!get(revealed, cell) || get(bombs, cell)) {
+                    continue;
+                }
+                firstRow = Math.max(0, row - 1);
+                lastRow = Math.min(numRows - 1, row + 1);
+                firstCol = Math.max(0, col - 1);
+                lastCol = Math.min(numCols - 1, col + 1);
+                int flags = 0;
+                for (int i = firstRow; i <= lastRow; i++) {
+                    for (int j = firstCol; j <= lastCol; j++) {
+                        if (get(flagged, i * numCols + j)) {
+                            flags++;
+                        }
+                    }
+                }
+                if (flags != count(cell)) {
+                    continue;
+                }
+            } else if (action != REVEAL) {
+                continue;
+            }
+            for (int i = firstRow; i <= lastRow; i++) {
+                for (int j = firstCol; j <= lastCol; j++) {
+                    int next = i * numCols + j;
+                    if (get(flagged, next) || get(revealed, next)) {
+                        continue;
+                    }
+                    startTime();
+                    if (!bombsAssigned) {
+                        assignBombs(next);
+                    }
+                    if (get(bombs, next)) {
+                        // the other Pieces of a chord are still revealed
+                        if (lost == -1) {
+                            lost = next;
+                        }
+                        continue;
+                    }
+                    log(next >>> 6, 0);
+                    set(revealed, next);
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, (int) Math.min(2L * tail, cells));
+                    }
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        int flooded = flood(first, tail - first);
+        count += flooded;
+        safeRevealed += flooded;
+        if (lost != -1) {
+            log(lost >>> 6, 0);
+            set(revealed, lost);
+            if (revealedListComplete) {
+                if (count == queue.length) {
+                    queue = Arrays.copyOf(queue, count + 1);
+                }
+                queue[count] = lost;
+            }
+            count++;
+            endGame(Status.LOST);
+        } else if (status == Status.PLAYING) {
+            checkWin();
+        }
+        numRevealedCells = count;
+        return count + toggled;
+    }
+
+    /**
+     * toggleFlag(int row, int col) flags the Piece at the given position, or removes its flag if it
+     * is already flagged (as a right click would); revealed Pieces cannot be flagged
+     *
+     * @param int row: the row of the Piece to flag
+     * @param int col: the column of the Piece to flag
+     * @return boolean: true if the board changed
+     */
+    public boolean toggleFlag(int row, int col) {
+        int cell = row * numCols + col;
+        if (status != Status.PLAYING || get(revealed, cell)) {
+            return false;
+        }
+        startTime();
+
+        log(cell >>> 6, 1);
+        flagged[cell >>> 6] ^= 1L << cell;
+        int change = get(flagged, cell) ? 1 : -1;
+        flagsPlaced += change;
+        if (get(bombs, cell)) {
+            correctFlags += change;
+        }
+        checkWin();
+        return true;
+    }
+
+    /**
+     * getNumbers(int start) reveals the given (unrevealed, bomb-free) Piece; if it has no adjacent
+     * bombs, its neighbours are revealed too, and so on (see flood())
+     *
+     * @param int start: the cell to reveal
+     * @return int count: the number of newly revealed Pieces, which are queue[0] to
+     * queue[count - 1] if revealedListComplete is true
+     */
+    private int getNumbers(int start) {
+        revealedListComplete = true;
+        log(start >>> 6, 0);
+        set(revealed, start);
+        queue[0] = start;
+        return flood(0, 1);
+    }
+
+    /**
+     * flood(int first, int starts) finishes revealing from the Pieces in queue[first] to
+     * queue[first + starts - 1], which are already marked revealed: the neighbours of any with no
+     * adjacent bombs are revealed too, and so on. This is a flood fill over an explicit worklist
+     * rather than recursion, so large open areas cannot overflow the stack: each Piece is marked
+     * revealed when it is added to the queue, so it is added (and counted) only once.
+     *
+     * @param int first: the index in queue of the first Piece to start from
+     * @param int starts: the number of Pieces to start from
+     * @return int count: the number of Pieces revealed, including the starting ones, which follow
+     * them in queue if revealedListComplete is true
+     */
+    private int flood(int first, int starts) {
+        int head = first;
+        int tail = first + starts;
+        int count = starts;
+
+        while (head < tail) {
+            int cell = queue[head++];
+            if (!revealedListComplete && boundaryComplete) {
+                addBoundary(cell);
+            }
+            int pieceI = cell / numCols;
+            int pieceJ = cell - pieceI * numCols;
+
+            // if none of the adjacent Pieces have bombs, reveal all of them as well
+            if (count(cell) == 0) {
+                int lastI = Math.min(numRows - 1, pieceI + 1);
+                int firstJ = Math.max(0, pieceJ - 1);
+                int lastJ = Math.min(numCols - 1, pieceJ + 1);
+                for (int i = Math.max(0, pieceI - 1); i <= lastI; i++) {
+                    for (int j = firstJ, next = i * numCols + j; j <= lastJ; j++, next++) {
+                        // neighbours of a Piece with no adjacent bombs never have bombs
+                        long bit = 1L << next;
+                        int w = next >>> 6;
+                        if (((revealed[w] | flagged[w]) & bit) == 0) {
+                            if (numSnapshots > 0) {
+                                log(w, 0);
+                            }
+                            revealed[w] |= bit;
+                            count++;
+                            if (tail == queue.length) {
+                                if (tail >= MAX_REVEALED_LIST) {
+                                    // stop keeping the list; keep only the cells still to visit,
+                                    // and the numbers next to the ones visited
+                                    if (revealedListComplete) {
+                                        revealedListComplete = false;
+                                        startBoundary();
+                                        for (int k = 0; k < head; k++) {
+                                            addBoundary(queue[k]);
+                                        }
+                                    }
+                                    System.arraycopy(queue, head, queue, 0, tail - head);
+                                    tail -= head;
+                                    head = 0;
+                                }
+                                if (tail == queue.length) {
+                                    queue = Arrays.copyOf(queue,
+                                            (int) Math.min(2L * tail, (long) numRows * numCols));
+                                }
+                            }
+                            queue[tail++] = next;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * getRevealedCells() returns the cells (as row * numCols + col) revealed by the last call to
+     * reveal(); only the first n entries are valid, where n is the value reveal() returned, and the
+     * array is reused by the next reveal. If more than MAX_REVEALED_LIST (about a million) Pieces
+     * were revealed at once, the list is not kept and this returns null (see getBoundaryCells()).
+     *
+     * @return int[] queue: the newly revealed cells, or null
+     */
+    public int[] getRevealedCells() {
+        return revealedListComplete ? queue : null;
+    }
+
+    /**
+     * getBoundaryCells() returns, when getRevealedCells() returns null after a reveal, the
+     * revealed numbers next to the Pieces it revealed (the edge of the opening, and any numbers
+     * already revealed that it reached); only the first getNumBoundaryCells() entries are valid.
+     * These are the only numbers whose hidden neighbors changed.
+     *
+     * @return int[] boundary: the numbers, or null if the list of revealed cells was kept (or
+     *         there were more than MAX_REVEALED_LIST numbers as well)
+     */
+    public int[] getBoundaryCells() {
+        return boundaryComplete ? boundary : null;
+    }
+
+    /**
+     * getNumBoundaryCells() returns the number of entries of getBoundaryCells() that are valid
+     *
+     * @return int n: the number of numbers listed
+     */
+    public int getNumBoundaryCells() {
+        return numBoundaryCells;
+    }
+
+    /**
+     * startBoundary() starts an empty list of the numbers next to the cells being revealed
+     */
+    private void startBoundary() {
+        if (listed == null || listed.length < words) {
+            listed = new long[words];
+        } else {
+            Arrays.fill(listed, 0, words, 0L);
+        }
+        if (boundary == null) {
+            boundary = new int[INITIAL_QUEUE];
+        }
+        numBoundaryCells = 0;
+        boundaryComplete = true;
+    }
+
+    /**
+     * addBoundary(int cell) adds a revealed cell to the boundary if it is a number, or the
+     * revealed numbers around it if it has no adjacent bombs
+     */
+    private void addBoundary(int cell) {
+        if (count(cell) > 0) {
+            listBoundary(cell);
+            return;
+        }
+        int row = cell / numCols;
+        int col = cell - row * numCols;
+        for (int i = Math.max(0, row - 1); i <= Math.min(numRows - 1, row + 1); i++) {
+            for (int j = Math.max(0, col - 1); j <= Math.min(numCols - 1, col + 1); j++) {
+                int next = i * numCols + j;
+                if (count(next) > 0 && get(revealed, next)) {
+                    listBoundary(next);
+                }
+            }
+        }
+    }
+
+    /**
+     * listBoundary(int cell) adds a number to the boundary unless it is there already
+     */
+    private void listBoundary(int cell) {
+        if (!boundaryComplete || get(listed, cell)) {
+            return;
+        }
+        if (numBoundaryCells == MAX_REVEALED_LIST) {
+            boundaryComplete = false;
+            return;
+        }
+        set(listed, cell);
+        if (numBoundaryCells == boundary.length) {
+            boundary = Arrays.copyOf(boundary, Math.min(2 * numBoundaryCells,
+                    MAX_REVEALED_LIST));
+        }
+        boundary[numBoundaryCells++] = cell;
+    }
+
+    /**
+     * getNumRevealedCells() returns the number of cells revealed by the last call to reveal(),
+     * chord() or applyBatch() (the number of entries of getRevealedCells() that are valid)
+     *
+     * @return int n: the number of newly revealed cells
+     */
+    public int getNumRevealedCells() {
+        return numRevealedCells;
+    }
+
+    /**
+     * snapshot() saves the state of the game, so that undo() can go back to it; taking a snapshot
+     * takes O(1) time, and while there are snapshots, each move uses memory in proportion to the
+     * Pieces it changes. Snapshots can be nested (for example one before every move).
+     *
+     * @return int snapshots: the number of snapshots now saved
+     */
+    public int snapshot() {
+        if (numSnapshots == snapshots.length) {
+            snapshots = Arrays.copyOf(snapshots, numSnapshots * 2);
+        }
+        Snapshot snapshot = snapshots[numSnapshots];
+        if (snapshot == null) {
+            snapshot = new Snapshot();
+            snapshots[numSnapshots] = snapshot;
+        }
+        if (logged == null || logged.length < 2 * bombs.length) {
+            logged = new int[2 * bombs.length];
+        }
+        snapshot.id = ++lastSnapshotId;
+        snapshotId = snapshot.id;
+        snapshot.trailSize = trailSize;
+        snapshot.flagsPlaced = flagsPlaced;
+        snapshot.correctFlags = correctFlags;
+        snapshot.safeRevealed = safeRevealed;
+        snapshot.status = status;
+        snapshot.startTime = startTime;
+        snapshot.endTime = endTime;
+        snapshot.timeStarted = timeStarted;
+        snapshot.bombsAssigned = bombsAssigned;
+        return ++numSnapshots;
+    }
+
+    /**
+     * undo() puts the game back the way it was when the last snapshot was taken, and forgets that
+     * snapshot; only the words of the bitsets changed since are written. The cells it changes are
+     * available from getUndoneCells() afterwards, and getRevealedCells() returns null until the
+     * next reveal.
+     *
+     * @return boolean: true if there was a snapshot to go back to
+     */
+    public boolean undo() {
+        if (numSnapshots == 0) {
+            return false;
+        }
+        Snapshot snapshot = snapshots[--numSnapshots];
+        snapshotId = numSnapshots == 0 ? 0 : snapshots[numSnapshots - 1].id;
+        undoneListComplete = true;
+        numUndoneCells = 0;
+        while (trailSize > snapshot.trailSize) {
+            trailSize -= 2;
+            long key = trail[trailSize];
+            int w = (int) (key >>> 1);
+            long[] bits = (key & 1) == 0 ? revealed : flagged;
+            long changed = bits[w] ^ trail[trailSize + 1];
+            bits[w] = trail[trailSize + 1];
+            for (; changed != 0 && undoneListComplete; changed &= changed - 1) {
+                if (numUndoneCells == MAX_REVEALED_LIST) {
+                    undoneListComplete = false;
+                } else {
+                    if (numUndoneCells == queue.length) {
+                        queue = Arrays.copyOf(queue, Math.min(2 * numUndoneCells,
+                                MAX_REVEALED_LIST));
+                    }
+                    queue[numUndoneCells++] = w << 6 | Long.numberOfTrailingZeros(changed);
+                }
+            }
+        }
+        if (bombsAssigned && !snapshot.bombsAssigned) {
+            // back to before the first reveal, which places the bombs
+            Arrays.fill(bombs, 0, words, 0L);
+            Arrays.fill(counts, 0, countBytes, (byte) 0);
+            bombsAssigned = false;
+        }
+        flagsPlaced = snapshot.flagsPlaced;
+        correctFlags = snapshot.correctFlags;
+        safeRevealed = snapshot.safeRevealed;
+        status = snapshot.status;
+        startTime = snapshot.startTime;
+        endTime = snapshot.endTime;
+        timeStarted = snapshot.timeStarted;
+        revealedListComplete = false;
+        boundaryComplete = false;
+        return true;
+    }
+
+    /**
+     * getUndoneCells() returns the cells (as row * numCols + col) revealed, hidden, flagged or
+     * unflagged by the last call to undo() (a cell may be listed twice); only the first
+     * getNumUndoneCells() entries are valid, and the array is reused by the next move. If more
+     * than MAX_REVEALED_LIST cells changed, the list is not kept and this returns null.
+     *
+     * @return int[] queue: the changed cells, or null
+     */
+    public int[] getUndoneCells() {
+        return undoneListComplete ? queue : null;
+    }
+
+    /**
+     * getNumUndoneCells() returns the number of entries of getUndoneCells() that are valid
+     *
+     * @return int n: the number of changed cells listed
+     */
+    public int getNumUndoneCells() {
+        return numUndoneCells;
+    }
+
+    /**
+     * numSnapshots() returns the number of snapshots saved (the number of times undo() can be
+     * called)
+     *
+     * @return int numSnapshots: the number of snapshots
+     */
+    public int numSnapshots() {
+        return numSnapshots;
+    }
+
+    /**
+     * trailLength() returns the number of words in the trail (for tests)
+     */
+    int trailLength() {
+        return trailSize / 2;
+    }
+
+    /**
+     * log(int w, int flags) adds a word of the revealed bitset (flags 0) or the flagged bitset
+     * (flags 1) to the trail before it is changed, if there are snapshots to undo to and it has
+     * not been logged since the last one
+     */
+    private void log(int w, int flags) {
+        if (numSnapshots == 0 || logged[w << 1 | flags] == snapshotId) {
+            return;
+        }
+        logged[w << 1 | flags] = snapshotId;
+        if (trailSize == trail.length) {
+            trail = Arrays.copyOf(trail, trailSize * 2);
+        }
+        trail[trailSize] = (long) w << 1 | flags;
+        trail[trailSize + 1] = flags == 0 ? revealed[w] : flagged[w];
+        trailSize += 2;
+    }
+
+    /**
+     * numFlagged() returns the number of Pieces currently flagged
+     *
+     * @return int count: number of Pieces that are currently flagged
+     */
+    public int numFlagged() {
+        return flagsPlaced;
+    }
+
+    /**
+     * numRevealed() returns the number of Pieces without bombs that have been revealed
+     *
+     * @return int safeRevealed: number of safe Pieces revealed so far
+     */
+    public int numRevealed() {
+        return safeRevealed;
+    }
+
+    /**
+     * checkWin() checks to see if the game is won: either every bomb is flagged and no other Piece
+     * is, or every Piece without a bomb has been revealed
+     */
+    private void checkWin() {
+        if ((correctFlags == numBombs && flagsPlaced == numBombs)
+                || safeRevealed == numRows * numCols - numBombs) {
+            endGame(Status.WON);
+        }
+    }
+
+    /**
+     * startTime() starts the game clock on the first move
+     */
+    private void startTime() {
+        if (!timeStarted) {
+            startTime = System.nanoTime();
+            timeStarted = true;
+        }
+    }
+
+    /**
+     * endGame(Status result) ends the game with the given result and stops the game clock
+     *
+     * @param Status result: either WON or LOST
+     */
+    private void endGame(Status result) {
+        status = result;
+        endTime = System.nanoTime();
+    }
+
+    /**
+     * status() returns the status of the game
+     *
+     * @return Status status: PLAYING, WON, or LOST
+     */
+    public Status status() {
+        return status;
+    }
+
+    /**
+     * elapsed() returns the number of whole seconds since the first move, stopping when the game
+     * ends; 0 if no move has been made yet
+     *
+     * @return int: the number of seconds played
+     */
+    public int elapsed() {
+        return (int) (elapsedNanos() / 1000000000L);
+    }
+
+    /**
+     * elapsedNanos() returns the number of nanoseconds since the first move, stopping when the
+     * game ends; 0 if no move has been made yet
+     *
+     * @return long: the time played in nanoseconds
+     */
+    public long elapsedNanos() {
+        if (!timeStarted) {
+            return 0;
+        }
+        long end = status == Status.PLAYING ? System.nanoTime() : endTime;
+        return end - startTime;
+    }
+
+    /**
+     * getNumBombs() returns the number of bombs on the board
+     *
+     * @return int numBombs: the engine's numBombs property
+     */
+    public int getNumBombs() {
+        return numBombs;
+    }
+
+    /**
+     * getSeed() returns the seed the current board's bombs were placed with
+     *
+     * @return long seed: the board's seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * getNumPieces() returns the number of pieces on one side of a square board (for other boards,
+     * the number of columns)
+     *
+     * @return int numCols: the number of pieces in each row
+     */
+    public int getNumPieces() {
+        return numCols;
+    }
+
+    /**
+     * getNumRows() returns the number of rows of pieces on the board
+     *
+     * @return int numRows: the engine's numRows property
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * getNumCols() returns the number of columns of pieces on the board
+     *
+     * @return int numCols: the engine's numCols property
+     */
+    public int getNumCols() {
+        return numCols;
+    }
+
+    /**
+     * hasBomb(int row, int col) returns true if the Piece at the given position has a bomb (always
+     * false until the first Piece is revealed)
+     */
+    public boolean hasBomb(int row, int col) {
+        return get(bombs, row * numCols + col);
+    }
+
+    /**
+     * isRevealed(int row, int col) returns true if the Piece at the given position has been
+     * revealed (either clicked or uncovered by a neighbour with no adjacent bombs)
+     */
+    public boolean isRevealed(int row, int col) {
+        return get(revealed, row * numCols + col);
+    }
+
+    /**
+     * isFlagged(int row, int col) returns true if the Piece at the given position is flagged
+     */
+    public boolean isFlagged(int row, int col) {
+        return get(flagged, row * numCols + col);
+    }
+
+    /**
+     * getNumAdjacent(int row, int col) returns the number of bombs adjacent to the Piece at the
+     * given position; if it has not been revealed yet this will be -1
+     *
+     * @return int: the number of bombs adjacent to the Piece
+     */
+    public int getNumAdjacent(int row, int col) {
+        if (!isRevealed(row, col)) {
+            return -1;
+        }
+        return count(row * numCols + col);
+    }
+
+    /**
+     * count(int cell) looks up the number of bombs adjacent to the given cell
+     *
+     * @return int: the number of adjacent bombs
+     */
+    private int count(int cell) {
+        return (counts[cell >>> 1] >>> ((cell & 1) << 2)) & 0xF;
+    }
+
+    /**
+     * get(long[] bits, int cell) returns the bit for the given cell in a packed bitset
+     */
+    private static boolean get(long[] bits, int cell) {
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * set(long[] bits, int cell) sets the bit for the given cell in a packed bitset
+     */
+    private static void set(long[] bits, int cell) {
+        bits[cell >>> 6] |= 1L << cell;
+    }
+
+}
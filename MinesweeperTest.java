@@ -61,6 +61,1221 @@ public class MinesweeperTest {
         assertEquals(40, bombs);
     }
     
+    @Test
+    public void testCellAt() {
+        int origin = board.getPositions()[0];
+        assertEquals(0, board.cellAt(origin + 1, origin + 1));
+        assertEquals(9 + 2, board.cellAt(origin + 2 * Piece.SIZE + 3, origin + Piece.SIZE + 3));
+        assertEquals(-1, board.cellAt(origin - 1, origin + 1));
+        assertEquals(-1, board.cellAt(origin + 9 * Piece.SIZE, origin + 1));
+    }
+    
+    @Test
+    public void testSetCustom() {
+        board.setCustom(16, 30, 99);
+        assertEquals(16, board.getNumRows());
+        assertEquals(30, board.getNumCols());
+        assertEquals(99, board.getNumBombs());
+        int[] positions = board.getPositions();
+        assertEquals(30, positions.length);
+        assertTrue(board.getPreferredSize().width >= 30 * Piece.SIZE);
+        int top = board.getPreferredSize().height / 2 - 16 * Piece.SIZE / 2;
+        assertEquals(29, board.cellAt(positions[29] + 1, top + 1));
+        assertEquals(30 + 29, board.cellAt(positions[29] + 1, top + Piece.SIZE + 1));
+    }
+    
+    @Test
+    public void testZoom() {
+        board.setCustom(100, 100, 10);
+        board.zoom(30, 0, 0);
+        assertEquals(30, board.getCellSize());
+        assertTrue(board.getPreferredSize().width >= 100 * 30);
+        int[] positions = board.getPositions();
+        assertEquals(30, positions[1] - positions[0]);
+        int top = board.getPreferredSize().height / 2 - 100 * 30 / 2;
+        assertEquals(100 + 1, board.cellAt(positions[1] + 29, top + 31));
+        
+        board.zoom(1000, 0, 0);
+        assertEquals(Board.MAX_CELL_SIZE, board.getCellSize());
+        board.zoom(0, 0, 0);
+        assertEquals(Board.MIN_CELL_SIZE, board.getCellSize());
+    }
+    
+    @Test
+    public void testResetAllocatesNothing() {
+        java.lang.management.ThreadMXBean threads =
+                java.lang.management.ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        long thread = Thread.currentThread().getId();
+        board.setLevel('I');
+        MinesweeperEngine engine = board.getEngine();
+        
+        // warm up so that the methods are compiled, then count the bytes of many new games
+        long before = 0;
+        for (int game = 0; game < 40000; game++) {
+            if (game == 20000) {
+                before = allocations.getThreadAllocatedBytes(thread);
+            }
+            board.reset();
+            engine.reveal(8, 8);
+        }
+        long allocated = allocations.getThreadAllocatedBytes(thread) - before;
+        assertTrue("allocated " + allocated + " bytes", allocated < 20000 * 8);
+    }
+    
+    @Test
+    public void testResetAfterBiggerBoard() {
+        MinesweeperEngine engine = new MinesweeperEngine(30, 30, 100, 3L);
+        engine.toggleFlag(29, 29);
+        engine.reveal(0, 0);
+        engine.reset(9, 9, 10, 7L);
+        assertEquals(0, engine.numRevealed());
+        assertEquals(0, engine.numFlagged());
+        engine.reveal(4, 4);
+        
+        // the same as a game on a new engine
+        MinesweeperEngine fresh = new MinesweeperEngine(9, 9, 10, 7L);
+        fresh.reveal(4, 4);
+        assertEquals(fresh.numRevealed(), engine.numRevealed());
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                assertEquals(fresh.hasBomb(i, j), engine.hasBomb(i, j));
+                assertEquals(fresh.isRevealed(i, j), engine.isRevealed(i, j));
+                assertEquals(fresh.isFlagged(i, j), engine.isFlagged(i, j));
+                if (!fresh.hasBomb(i, j)) {
+                    assertEquals(fresh.getNumAdjacent(i, j), engine.getNumAdjacent(i, j));
+                }
+            }
+        }
+    }
+    
+    // ENGINE TESTS
+    @Test
+    public void testEngineRevealBombLoses() {
+        MinesweeperEngine engine = new MinesweeperEngine(9, 10, 1L);
+        engine.reveal(4, 4);
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                if (engine.hasBomb(i, j) && engine.status() == MinesweeperEngine.Status.PLAYING) {
+                    engine.reveal(i, j);
+                }
+            }
+        }
+        assertEquals(MinesweeperEngine.Status.LOST, engine.status());
+    }
+    
+    @Test
+    public void testEngineFlagAllBombsWins() {
+        MinesweeperEngine engine = new MinesweeperEngine(9, 10, 1L);
+        engine.reveal(4, 4);
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                if (engine.hasBomb(i, j)) {
+                    engine.toggleFlag(i, j);
+                }
+            }
+        }
+        assertEquals(10, engine.numFlagged());
+        assertEquals(MinesweeperEngine.Status.WON, engine.status());
+    }
+    
+    @Test
+    public void testEngineRevealSetsNumAdjacent() {
+        MinesweeperEngine engine = new MinesweeperEngine(9, 10);
+        assertEquals(-1, engine.getNumAdjacent(0, 0));
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                if (!engine.hasBomb(i, j)) {
+                    engine.reveal(i, j);
+                    assertTrue(engine.isRevealed(i, j));
+                    assertTrue(engine.getNumAdjacent(i, j) >= 0);
+                    return;
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testEngineCannotFlagRevealed() {
+        MinesweeperEngine engine = new MinesweeperEngine(9, 10);
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                if (!engine.hasBomb(i, j)) {
+                    engine.reveal(i, j);
+                    assertFalse(engine.toggleFlag(i, j));
+                    assertFalse(engine.isFlagged(i, j));
+                    return;
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testEngineRevealLargeOpenBoard() {
+        MinesweeperEngine engine = new MinesweeperEngine(1000, 0);
+        int n = engine.reveal(500, 500);
+        assertEquals(1000 * 1000, n);
+        assertTrue(engine.isRevealed(0, 0));
+        assertTrue(engine.isRevealed(999, 999));
+    }
+    
+    @Test
+    public void testEngineRevealReturnsEachCellOnce() {
+        MinesweeperEngine engine = new MinesweeperEngine(30, 0);
+        int n = engine.reveal(0, 0);
+        boolean[] seen = new boolean[30 * 30];
+        int[] cells = engine.getRevealedCells();
+        for (int k = 0; k < n; k++) {
+            assertFalse(seen[cells[k]]);
+            seen[cells[k]] = true;
+        }
+        assertEquals(30 * 30, n);
+        assertEquals(0, engine.reveal(0, 0));
+    }
+    
+    @Test
+    public void testEngineNumAdjacentMatchesBombs() {
+        MinesweeperEngine engine = new MinesweeperEngine(70, 1500);
+        for (int i = 0; i < 70; i++) {
+            for (int j = 0; j < 70; j++) {
+                if (engine.hasBomb(i, j)) {
+                    continue;
+                }
+                engine.reveal(i, j);
+                int num = 0;
+                for (int a = Math.max(0, i - 1); a < Math.min(70, i + 2); a++) {
+                    for (int b = Math.max(0, j - 1); b < Math.min(70, j + 2); b++) {
+                        if (engine.hasBomb(a, b)) {
+                            num++;
+                        }
+                    }
+                }
+                assertEquals(num, engine.getNumAdjacent(i, j));
+            }
+        }
+    }
+    
+    @Test
+    public void testEngineRevealAllSafeWins() {
+        MinesweeperEngine engine = new MinesweeperEngine(9, 10);
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                if (!engine.hasBomb(i, j)) {
+                    engine.reveal(i, j);
+                }
+            }
+        }
+        assertEquals(81 - 10, engine.numRevealed());
+        assertEquals(MinesweeperEngine.Status.WON, engine.status());
+    }
+    
+    @Test
+    public void testEngineWrongFlagDoesNotWin() {
+        MinesweeperEngine engine = new MinesweeperEngine(9, 10, 7L);
+        // the bombs are placed on the first reveal
+        engine.reveal(4, 4);
+        assertEquals(MinesweeperEngine.Status.PLAYING, engine.status());
+        int flags = 0;
+        for (int i = 0; i < 9 && flags < 10; i++) {
+            for (int j = 0; j < 9 && flags < 10; j++) {
+                if (!engine.hasBomb(i, j) && !engine.isRevealed(i, j)) {
+                    engine.toggleFlag(i, j);
+                    flags++;
+                }
+            }
+        }
+        assertEquals(10, engine.numFlagged());
+        assertEquals(MinesweeperEngine.Status.PLAYING, engine.status());
+    }
+    
+    @Test
+    public void testEngineSameSeedSameBoard() {
+        MinesweeperEngine first = new MinesweeperEngine(16, 40, 12345L);
+        MinesweeperEngine second = new MinesweeperEngine(16, 40, 12345L);
+        first.reveal(3, 7);
+        second.reveal(3, 7);
+        for (int i = 0; i < 16; i++) {
+            for (int j = 0; j < 16; j++) {
+                assertEquals(first.hasBomb(i, j), second.hasBomb(i, j));
+            }
+        }
+        assertEquals(12345L, first.getSeed());
+    }
+    
+    @Test
+    public void testEngineExactBombCountAtHighDensity() {
+        MinesweeperEngine engine = new MinesweeperEngine(9, 80);
+        engine.reveal(0, 0);
+        int count = 0;
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                if (engine.hasBomb(i, j)) {
+                    count++;
+                }
+            }
+        }
+        assertEquals(80, count);
+        
+        engine.reset(9, 200);
+        assertEquals(81, engine.getNumBombs());
+    }
+    
+    @Test
+    public void testEngineFirstRevealIsSafe() {
+        for (long seed = 0; seed < 200; seed++) {
+            MinesweeperEngine engine = new MinesweeperEngine(9, 10, seed);
+            engine.reveal(2, 6);
+            assertEquals(0, engine.getNumAdjacent(2, 6));
+            assertEquals(MinesweeperEngine.Status.PLAYING, engine.status());
+        }
+        MinesweeperEngine full = new MinesweeperEngine(9, 81, 1L);
+        full.reveal(0, 0);
+        assertEquals(MinesweeperEngine.Status.LOST, full.status());
+    }
+    
+    @Test
+    public void testEngineRectangularBoard() {
+        MinesweeperEngine engine = new MinesweeperEngine(5, 120, 100, 3L);
+        engine.reveal(2, 100);
+        assertEquals(5, engine.getNumRows());
+        assertEquals(120, engine.getNumCols());
+        int count = 0;
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 120; j++) {
+                if (engine.hasBomb(i, j)) {
+                    count++;
+                } else {
+                    engine.reveal(i, j);
+                }
+            }
+        }
+        assertEquals(100, count);
+        assertEquals(5 * 120 - 100, engine.numRevealed());
+        assertEquals(MinesweeperEngine.Status.WON, engine.status());
+    }
+    
+    @Test
+    public void testEngineChord() {
+        int chorded = 0;
+        int lost = 0;
+        for (long seed = 0; seed < 50; seed++) {
+            MinesweeperEngine engine = new MinesweeperEngine(9, 10, seed);
+            MinesweeperEngine wrong = new MinesweeperEngine(9, 10, seed);
+            engine.reveal(4, 4);
+            wrong.reveal(4, 4);
+            for (int cell = 0; cell < 81; cell++) {
+                int row = cell / 9;
+                int col = cell % 9;
+                if (!engine.isRevealed(row, col) || engine.getNumAdjacent(row, col) != 1) {
+                    continue;
+                }
+                // flag the bomb next to it, or (on the other engine) a safe Piece instead
+                int bomb = -1;
+                int safe = -1;
+                for (int i = Math.max(0, row - 1); i <= Math.min(8, row + 1); i++) {
+                    for (int j = Math.max(0, col - 1); j <= Math.min(8, col + 1); j++) {
+                        if (engine.hasBomb(i, j)) {
+                            bomb = i * 9 + j;
+                        } else if (!engine.isRevealed(i, j)) {
+                            safe = i * 9 + j;
+                        }
+                    }
+                }
+                if (safe == -1) {
+                    continue;
+                }
+                assertEquals(0, engine.chord(row, col));
+                engine.toggleFlag(bomb / 9, bomb % 9);
+                assertTrue(engine.chord(row, col) > 0);
+                assertTrue(engine.isRevealed(safe / 9, safe % 9));
+                chorded++;
+                
+                wrong.toggleFlag(safe / 9, safe % 9);
+                assertTrue(wrong.chord(row, col) > 0);
+                assertEquals(MinesweeperEngine.Status.LOST, wrong.status());
+                lost++;
+                break;
+            }
+        }
+        assertTrue(chorded > 0 && lost > 0);
+    }
+    
+    @Test
+    public void testEngineBatchMatchesSingleMoves() {
+        NoGuessGenerator.Layout layout = new NoGuessGenerator(0).find(16, 16, 40, 10000);
+        MinesweeperEngine single = new MinesweeperEngine(16, 16, 40, layout.seed);
+        single.placeBombs(layout.start / 16, layout.start % 16);
+        Solver solver = new Solver(single);
+        int[] moves = new int[256];
+        int n = 0;
+        int cell = layout.start;
+        boolean flag = false;
+        
+        // play the game one move at a time, keeping the moves (all but the last)
+        while (true) {
+            if (flag) {
+                single.toggleFlag(cell / 16, cell % 16);
+                solver.flagged(cell);
+            } else {
+                reveal(single, solver, cell / 16, cell % 16);
+            }
+            if (single.status() != MinesweeperEngine.Status.PLAYING) {
+                break;
+            }
+            moves[n++] = MinesweeperEngine.move(cell, flag ? MinesweeperEngine.FLAG
+                    : MinesweeperEngine.REVEAL);
+            cell = solver.hint();
+            flag = solver.isBomb(cell);
+        }
+        
+        MinesweeperEngine batch = new MinesweeperEngine(16, 16, 40, layout.seed);
+        batch.placeBombs(layout.start / 16, layout.start % 16);
+        int changed = batch.applyBatch(moves, n);
+        assertTrue(changed >= n);
+        assertEquals(batch.numRevealed(), batch.getNumRevealedCells());
+        assertEquals(MinesweeperEngine.Status.PLAYING, batch.status());
+        
+        // the last move wins both
+        moves[0] = MinesweeperEngine.move(cell, flag ? MinesweeperEngine.FLAG
+                : MinesweeperEngine.REVEAL);
+        batch.applyBatch(moves, 1);
+        assertEquals(state(single), state(batch));
+    }
+    
+    @Test
+    public void testEngineBatchOfMixedMoves() {
+        // a flag on a Piece that an earlier reveal in the batch opens up is skipped
+        MinesweeperEngine engine = new MinesweeperEngine(16, 16, 10, 5L);
+        engine.placeBombs(0, 0);
+        int open = -1;
+        for (int cell = 0; open == -1; cell++) {
+            int bombs = 0;
+            for (int i = Math.max(0, cell / 16 - 1); i <= Math.min(15, cell / 16 + 1); i++) {
+                for (int j = Math.max(0, cell % 16 - 1); j <= cell % 16 + 1; j++) {
+                    bombs += engine.hasBomb(i, j) ? 1 : 0;
+                }
+            }
+            if (bombs == 0 && cell % 16 < 14) {
+                open = cell;
+            }
+        }
+        int[] moves = {MinesweeperEngine.move(open, MinesweeperEngine.REVEAL),
+                MinesweeperEngine.move(open + 1, MinesweeperEngine.FLAG)};
+        engine.applyBatch(moves, 2);
+        assertTrue(engine.isRevealed(open / 16, open % 16 + 1));
+        assertFalse(engine.isFlagged(open / 16, open % 16 + 1));
+        
+        // random batches of reveals, flags and chords end as they do when made one by one
+        java.util.Random random = new java.util.Random(3);
+        moves = new int[20];
+        for (int game = 0; game < 500; game++) {
+            long seed = random.nextLong();
+            int start = random.nextInt(256);
+            MinesweeperEngine batch = new MinesweeperEngine(16, 16, 10, seed);
+            MinesweeperEngine single = new MinesweeperEngine(16, 16, 10, seed);
+            batch.placeBombs(start / 16, start % 16);
+            single.placeBombs(start / 16, start % 16);
+            int n = 1 + random.nextInt(moves.length);
+            for (int m = 0; m < n; m++) {
+                int cell = random.nextInt(256);
+                int action = random.nextInt(3);
+                moves[m] = MinesweeperEngine.move(cell, action);
+                if (action == MinesweeperEngine.REVEAL) {
+                    single.reveal(cell / 16, cell % 16);
+                } else if (action == MinesweeperEngine.FLAG) {
+                    single.toggleFlag(cell / 16, cell % 16);
+                } else {
+                    single.chord(cell / 16, cell % 16);
+                }
+            }
+            batch.applyBatch(moves, n);
+            assertEquals(state(single), state(batch));
+        }
+    }
+    
+    // UNDO TESTS
+    /**
+     * state(MinesweeperEngine engine) describes everything a player can see of a game
+     */
+    private String state(MinesweeperEngine engine) {
+        StringBuilder state = new StringBuilder(engine.status() + " " + engine.numRevealed() + " "
+                + engine.numFlagged() + "\n");
+        for (int i = 0; i < engine.getNumRows(); i++) {
+            for (int j = 0; j < engine.getNumCols(); j++) {
+                state.append(engine.isFlagged(i, j) ? 'F' : engine.isRevealed(i, j)
+                        ? (char) ('0' + engine.getNumAdjacent(i, j)) : '.');
+            }
+            state.append('\n');
+        }
+        return state.toString();
+    }
+    
+    @Test
+    public void testUndoEveryMove() {
+        MinesweeperEngine engine = new MinesweeperEngine(30, 40, 200, 11L);
+        java.util.Random random = new java.util.Random(11);
+        java.util.List<String> states = new java.util.ArrayList<String>();
+        states.add(state(engine));
+        engine.snapshot();
+        engine.reveal(15, 20);
+        while (engine.status() == MinesweeperEngine.Status.PLAYING) {
+            states.add(state(engine));
+            engine.snapshot();
+            int row = random.nextInt(30);
+            int col = random.nextInt(40);
+            if (random.nextInt(4) == 0) {
+                engine.toggleFlag(row, col);
+            } else {
+                engine.reveal(row, col);
+            }
+        }
+        
+        // undo back to the start, seeing every state again
+        for (int k = states.size() - 1; k >= 0; k--) {
+            assertTrue(engine.undo());
+            assertEquals(states.get(k), state(engine));
+        }
+        assertFalse(engine.undo());
+        assertEquals(0, engine.numSnapshots());
+    }
+    
+    @Test
+    public void testUndoTrailHasEachWordOnce() {
+        // an open 1000 by 1000 board is revealed by one click: about 15625 words of 64 Pieces
+        MinesweeperEngine engine = new MinesweeperEngine(1000, 1000, 0, 1L);
+        engine.snapshot();
+        engine.reveal(500, 500);
+        assertEquals(1000 * 1000, engine.numRevealed());
+        assertEquals((1000 * 1000 + 63) / 64, engine.trailLength());
+        
+        assertTrue(engine.undo());
+        assertEquals(0, engine.numRevealed());
+        
+        // a word changed again after a new snapshot is logged again, once
+        MinesweeperEngine small = new MinesweeperEngine(9, 10, 2L);
+        small.snapshot();
+        small.toggleFlag(0, 0);
+        small.toggleFlag(0, 1);
+        small.toggleFlag(0, 2);
+        assertEquals(1, small.trailLength());
+        small.snapshot();
+        small.toggleFlag(0, 3);
+        assertEquals(2, small.trailLength());
+        assertTrue(small.undo());
+        assertTrue(small.undo());
+        assertFalse(small.isFlagged(0, 0) || small.isFlagged(0, 3));
+    }
+    
+    @Test
+    public void testUndoFirstReveal() {
+        MinesweeperEngine engine = new MinesweeperEngine(9, 10, 4L);
+        engine.snapshot();
+        engine.reveal(0, 0);
+        assertTrue(engine.undo());
+        assertFalse(engine.hasBomb(0, 0) || engine.isRevealed(0, 0));
+        
+        // the bombs are placed again around the next first reveal, as on a new game
+        engine.reveal(8, 8);
+        MinesweeperEngine fresh = new MinesweeperEngine(9, 10, 4L);
+        fresh.reveal(8, 8);
+        assertEquals(state(fresh), state(engine));
+    }
+    
+    // SOLVER TESTS
+    /**
+     * reveal(MinesweeperEngine engine, Solver solver, int row, int col) reveals a Piece and tells
+     * the solver (asking for the revealed cells after the reveal, which may replace the array)
+     */
+    private void reveal(MinesweeperEngine engine, Solver solver, int row, int col) {
+        int n = engine.reveal(row, col);
+        solver.revealed(engine.getRevealedCells(), n);
+    }
+    
+    @Test
+    public void testSolverUsesBoundaryOfHugeOpening() {
+        // an opening of more than a million Pieces, too many to list
+        MinesweeperEngine engine = new MinesweeperEngine(1100, 1100, 3000, 3L);
+        Solver solver = new Solver(engine);
+        solver.reset();
+        reveal(engine, solver, 550, 550);
+        assertNull(engine.getRevealedCells());
+        assertEquals(MinesweeperEngine.Status.PLAYING, engine.status());
+        
+        // the boundary is every revealed number, each once
+        int[] boundary = engine.getBoundaryCells();
+        java.util.Set<Integer> listed = new java.util.HashSet<Integer>();
+        for (int k = 0; k < engine.getNumBoundaryCells(); k++) {
+            assertTrue(listed.add(boundary[k]));
+            assertTrue(engine.getNumAdjacent(boundary[k] / 1100, boundary[k] % 1100) > 0);
+        }
+        int numbers = 0;
+        for (int cell = 0; cell < 1100 * 1100; cell++) {
+            if (engine.getNumAdjacent(cell / 1100, cell % 1100) > 0) {
+                numbers++;
+            }
+        }
+        assertEquals(numbers, listed.size());
+        
+        int cell = solver.hint();
+        assertTrue(cell != -1);
+        assertEquals(engine.hasBomb(cell / 1100, cell % 1100), solver.isBomb(cell));
+    }
+    
+    @Test
+    public void testSolverHintsAreCorrect() {
+        int hints = 0;
+        for (long seed = 1; seed <= 20; seed++) {
+            MinesweeperEngine engine = new MinesweeperEngine(16, 30, 99, seed);
+            Solver solver = new Solver(engine);
+            assertEquals(-1, solver.hint());
+            reveal(engine, solver, 8, 15);
+            for (int cell = solver.hint(); cell != -1; cell = solver.hint()) {
+                int row = cell / 30;
+                int col = cell % 30;
+                assertEquals(engine.hasBomb(row, col), solver.isBomb(cell));
+                if (solver.isBomb(cell)) {
+                    engine.toggleFlag(row, col);
+                    solver.flagged(cell);
+                } else {
+                    reveal(engine, solver, row, col);
+                }
+                hints++;
+            }
+            assertFalse(engine.status() == MinesweeperEngine.Status.LOST);
+        }
+        assertTrue(hints > 0);
+    }
+    
+    @Test
+    public void testSolverAfterUndo() {
+        java.util.Random random = new java.util.Random(8);
+        for (long seed = 1; seed <= 20; seed++) {
+            MinesweeperEngine engine = new MinesweeperEngine(16, 30, 99, seed);
+            Solver solver = new Solver(engine);
+            reveal(engine, solver, 8, 15);
+            
+            // play with a snapshot before each move; every fourth move is a wrong flag, which the
+            // solver trusts
+            for (int move = 0; move < 40; move++) {
+                engine.snapshot();
+                int cell = solver.hint();
+                if (move % 4 == 3 || cell == -1) {
+                    do {
+                        cell = random.nextInt(480);
+                    } while (engine.hasBomb(cell / 30, cell % 30)
+                            || engine.isRevealed(cell / 30, cell % 30));
+                    engine.toggleFlag(cell / 30, cell % 30);
+                    solver.flagged(cell);
+                } else if (solver.isBomb(cell)) {
+                    engine.toggleFlag(cell / 30, cell % 30);
+                    solver.flagged(cell);
+                } else {
+                    reveal(engine, solver, cell / 30, cell % 30);
+                }
+            }
+            
+            // after each undo, the solver finds a move exactly when one found from scratch does,
+            // and once no wrong flag is left its moves are right
+            while (engine.undo()) {
+                solver.undone(engine.getUndoneCells(), engine.getNumUndoneCells());
+                int cell = solver.hint();
+                assertEquals(new Solver(engine).hint() == -1, cell == -1);
+                boolean wrongFlags = false;
+                for (int other = 0; other < 480; other++) {
+                    wrongFlags |= engine.isFlagged(other / 30, other % 30)
+                            && !engine.hasBomb(other / 30, other % 30);
+                }
+                if (cell != -1 && !wrongFlags) {
+                    assertEquals(engine.hasBomb(cell / 30, cell % 30), solver.isBomb(cell));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testSolverSubsetRule() {
+        // bombs at (0, 0) and (0, 2): the 1, 2, 1 in the middle row can only be solved with the
+        // subset rule
+        MinesweeperEngine engine = new MinesweeperEngine(3, 3, 2, 7L);
+        for (long seed = 0; !(engine.reveal(2, 1) > 0 && engine.hasBomb(0, 0)
+                && engine.hasBomb(0, 2)); seed++) {
+            engine.reset(3, 3, 2, seed);
+        }
+        Solver solver = new Solver(engine);
+        for (int cell = solver.hint(); cell != -1; cell = solver.hint()) {
+            if (solver.isBomb(cell)) {
+                engine.toggleFlag(0, cell);
+                solver.flagged(cell);
+            } else {
+                reveal(engine, solver, 0, cell);
+            }
+        }
+        // revealing (0, 1) wins, whether or not both bombs have been flagged yet
+        assertTrue(engine.isRevealed(0, 1));
+        assertEquals(MinesweeperEngine.Status.WON, engine.status());
+    }
+    
+    // PROBABILITY TESTS
+    @Test
+    public void testProbabilitiesMatchBruteForce() {
+        for (long seed = 1; seed <= 15; seed++) {
+            MinesweeperEngine engine = new MinesweeperEngine(5, 6, 6, seed);
+            engine.reveal(2, 2);
+            if (engine.status() != MinesweeperEngine.Status.PLAYING) {
+                continue;
+            }
+            double[] expected = bruteForceProbabilities(engine);
+            double[] actual = new ProbabilityEngine(engine).probabilities();
+            for (int cell = 0; cell < expected.length; cell++) {
+                assertEquals(expected[cell], actual[cell], 1e-9);
+            }
+        }
+    }
+    
+    @Test
+    public void testLeastLikelyMatchesProbabilities() {
+        for (long seed = 1; seed <= 30; seed++) {
+            MinesweeperEngine engine = new MinesweeperEngine(16, 16, 40, seed);
+            engine.reveal(8, 8);
+            if (engine.status() != MinesweeperEngine.Status.PLAYING) {
+                continue;
+            }
+            ProbabilityEngine probabilities = new ProbabilityEngine(engine);
+            double[] chances = probabilities.probabilities();
+            int cell = probabilities.leastLikely();
+            assertFalse(engine.isRevealed(cell / 16, cell % 16));
+            assertEquals(chances[probabilities.leastLikely(chances)], chances[cell], 1e-12);
+            assertEquals(chances[cell], probabilities.leastLikelyChance(), 1e-12);
+        }
+    }
+    
+    @Test
+    public void testLeastLikelyStopsCountingInTime() {
+        // a row of numbers with hidden Pieces on both sides: with these seeds there are far too
+        // many placements to count in time
+        for (long seed : new long[] { 4, 6, 8, 15, 20 }) {
+            MinesweeperEngine engine = denseFrontier(seed);
+            ProbabilityEngine probabilities = new ProbabilityEngine(engine);
+            long start = System.nanoTime();
+            int cell = probabilities.leastLikely();
+            long millis = (System.nanoTime() - start) / 1000000;
+            assertTrue("took " + millis + " ms", millis < 10 * ProbabilityEngine.MAX_COUNT_MILLIS);
+            assertFalse(engine.isRevealed(cell / engine.getNumCols(), cell % engine.getNumCols()));
+            assertTrue(probabilities.leastLikelyChance() < 1);
+        }
+    }
+    
+    /**
+     * denseFrontier(long seed) returns an Expert game with 11 numbers revealed along its second
+     * row, every other Piece, so that the hidden Pieces around them make one component of about 57
+     */
+    static MinesweeperEngine denseFrontier(long seed) {
+        MinesweeperEngine engine = new MinesweeperEngine(16, 30, 99, seed);
+        engine.placeBombs(15, 29);
+        int shown = 0;
+        for (int col = 1; shown < 11 && col < 29; col += 2) {
+            if (!engine.hasBomb(1, col)) {
+                engine.reveal(1, col);
+                shown++;
+            }
+        }
+        return engine;
+    }
+    
+    @Test
+    public void testProbabilitiesBeforeFirstReveal() {
+        MinesweeperEngine engine = new MinesweeperEngine(16, 16, 40, 3L);
+        double[] probabilities = new ProbabilityEngine(engine).probabilities();
+        assertEquals(40.0 / 256, probabilities[0], 1e-12);
+        assertEquals(40.0 / 256, probabilities[255], 1e-12);
+    }
+    
+    /**
+     * bruteForceProbabilities(MinesweeperEngine engine) tries every placement of the remaining
+     * bombs among the hidden Pieces
+     */
+    private double[] bruteForceProbabilities(MinesweeperEngine engine) {
+        int rows = engine.getNumRows();
+        int cols = engine.getNumCols();
+        java.util.List<Integer> hidden = new java.util.ArrayList<Integer>();
+        for (int cell = 0; cell < rows * cols; cell++) {
+            if (!engine.isRevealed(cell / cols, cell % cols)) {
+                hidden.add(cell);
+            }
+        }
+        double[] ways = new double[rows * cols];
+        double total = 0;
+        for (int mask = 0; mask < (1 << hidden.size()); mask++) {
+            if (Integer.bitCount(mask) != engine.getNumBombs()) {
+                continue;
+            }
+            boolean[] bomb = new boolean[rows * cols];
+            for (int k = 0; k < hidden.size(); k++) {
+                bomb[hidden.get(k)] = (mask & (1 << k)) != 0;
+            }
+            boolean fits = true;
+            for (int cell = 0; cell < rows * cols && fits; cell++) {
+                int row = cell / cols;
+                int col = cell % cols;
+                if (!engine.isRevealed(row, col)) {
+                    continue;
+                }
+                int count = 0;
+                for (int i = Math.max(0, row - 1); i <= Math.min(rows - 1, row + 1); i++) {
+                    for (int j = Math.max(0, col - 1); j <= Math.min(cols - 1, col + 1); j++) {
+                        count += bomb[i * cols + j] ? 1 : 0;
+                    }
+                }
+                fits = count == engine.getNumAdjacent(row, col);
+            }
+            if (fits) {
+                total++;
+                for (int cell : hidden) {
+                    ways[cell] += bomb[cell] ? 1 : 0;
+                }
+            }
+        }
+        for (int cell = 0; cell < ways.length; cell++) {
+            ways[cell] /= total;
+        }
+        return ways;
+    }
+    
+    // SIMULATOR TESTS
+    @Test
+    public void testSimulatorSameResultsOnAnyNumberOfThreads() {
+        Simulator.Result one = Simulator.simulate('B', 300, Simulator.Bot.SOLVER, 1, 42L);
+        Simulator.Result three = Simulator.simulate('B', 300, Simulator.Bot.SOLVER, 3, 42L);
+        assertEquals(300, one.games);
+        assertEquals(one.wins, three.wins);
+        assertEquals(one.moves, three.moves);
+        assertEquals(one.revealed, three.revealed);
+        assertTrue(one.wins > 0);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testSimulatorUnknownLevel() {
+        Simulator.simulate('C', 10, Simulator.Bot.RANDOM, 1, 1L);
+    }
+    
+    // NO GUESS TESTS
+    @Test
+    public void testNoGuessLayoutIsSolvedFromItsStart() {
+        NoGuessGenerator generator = new NoGuessGenerator(0);
+        // nothing is ready yet, and take() does not wait
+        assertNull(generator.take(16, 16, 40));
+        NoGuessGenerator.Layout layout = generator.find(16, 16, 40, 10000);
+        assertTrue(layout != null);
+        
+        // the engine places the same bombs again from the seed and the start
+        MinesweeperEngine engine = new MinesweeperEngine(16, 16, 40, layout.seed);
+        assertTrue(NoGuessGenerator.solvable(engine, new Solver(engine), layout.start));
+        
+        MinesweeperEngine placed = new MinesweeperEngine(16, 16, 40, layout.seed);
+        placed.placeBombs(layout.start / 16, layout.start % 16);
+        assertFalse(placed.hasBomb(layout.start / 16, layout.start % 16));
+        for (int i = 0; i < 16; i++) {
+            for (int j = 0; j < 16; j++) {
+                assertEquals(engine.hasBomb(i, j), placed.hasBomb(i, j));
+            }
+        }
+    }
+    
+    @Test
+    public void testNoGuessEngineReusedAcrossSizes() {
+        // as a worker does: one engine and solver, checking Expert layouts and then a big board
+        MinesweeperEngine engine = new MinesweeperEngine(16, 30, 99, 0L);
+        Solver solver = new Solver(engine);
+        for (long seed = 1; seed <= 20; seed++) {
+            engine.reset(16, 30, 99, seed);
+            NoGuessGenerator.solvable(engine, solver, 8 * 30 + 15);
+        }
+        for (long seed = 1; seed <= 5; seed++) {
+            engine.reset(200, 200, 50, seed);
+            if (NoGuessGenerator.solvable(engine, solver, 100 * 200 + 100)) {
+                assertEquals(MinesweeperEngine.Status.WON, engine.status());
+            }
+        }
+    }
+    
+    @Test
+    public void testNoGuessPoolIsFilled() throws InterruptedException {
+        NoGuessGenerator generator = new NoGuessGenerator(2);
+        generator.prepare(9, 9, 10);
+        for (int wait = 0; wait < 100 && generator.numReady(9, 9, 10) < 3; wait++) {
+            Thread.sleep(50);
+        }
+        assertTrue(generator.numReady(9, 9, 10) >= 3);
+        assertTrue(generator.numReady(9, 9, 10) <= NoGuessGenerator.POOL_SIZE);
+        generator.take(9, 9, 10);
+        generator.shutdown();
+    }
+    
+    // REPLAY TESTS
+    /**
+     * recordWin(File directory, String name) records a won Beginner game in the given folder,
+     * with 0.7 seconds between moves, and returns the number of seconds it took
+     */
+    private int recordWin(java.io.File directory, String name) throws Exception {
+        NoGuessGenerator.Layout layout = new NoGuessGenerator(0).find(9, 9, 10, 10000);
+        MinesweeperEngine engine = new MinesweeperEngine(9, 9, 10, layout.seed);
+        engine.placeBombs(layout.start / 9, layout.start % 9);
+        Solver solver = new Solver(engine);
+        Replay.Recorder recorder = Replay.record(directory, 'B', engine, layout.start);
+        
+        long time = 0;
+        int cell = layout.start;
+        boolean flag = false;
+        while (engine.status() == MinesweeperEngine.Status.PLAYING) {
+            if (flag) {
+                engine.toggleFlag(cell / 9, cell % 9);
+                solver.flagged(cell);
+            } else {
+                reveal(engine, solver, cell / 9, cell % 9);
+            }
+            recorder.move(time, cell, flag ? Replay.FLAG : Replay.REVEAL);
+            time += 700;
+            cell = solver.hint();
+            flag = cell != -1 && solver.isBomb(cell);
+        }
+        recorder.name(name);
+        recorder.close();
+        Replay.finishWrites();
+        assertEquals(MinesweeperEngine.Status.WON, engine.status());
+        return (int) ((time - 700) / 1000);
+    }
+    
+    @Test
+    public void testReplayPlaysBackTheSameGame() throws Exception {
+        java.io.File directory = java.nio.file.Files.createTempDirectory("replays").toFile();
+        int seconds = recordWin(directory, "Ann");
+        java.io.File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        assertTrue(files[0].getName().startsWith("win-"));
+        
+        Replay replay = Replay.read(files[0]);
+        assertEquals('B', replay.getLevel());
+        assertEquals("Ann", replay.getName());
+        assertEquals(seconds, replay.seconds());
+        assertEquals(MinesweeperEngine.Status.WON,
+                replay.play(new MinesweeperEngine(16, 16, 40, 0L)));
+        // a few bytes per move
+        assertTrue(files[0].length() < 30 + 5 * replay.numMoves());
+        
+        files[0].delete();
+        directory.delete();
+    }
+    
+    @Test
+    public void testReplayVerifiesScores() throws Exception {
+        java.io.File directory = java.nio.file.Files.createTempDirectory("replays").toFile();
+        int seconds = recordWin(directory, "Ann");
+        recordWin(directory, "Bo");
+        java.io.File file = java.io.File.createTempFile("leaderboard", ".dat");
+        file.delete();
+        Leaderboard scores = new Leaderboard(file.getPath());
+        scores.add('B', "Ann", seconds);
+        scores.add('B', "Ann", seconds);
+        scores.add('B', "Cy", 1);
+        
+        // one of Ann's scores has a replay, the other and Cy's do not
+        Replay.Verification verification = Replay.verify(scores, directory);
+        assertEquals(2, verification.replays);
+        assertEquals(2, verification.wins);
+        assertEquals(1, verification.verified);
+        assertEquals(2, verification.unverified.size());
+        
+        scores.close();
+        file.delete();
+        for (java.io.File replay : directory.listFiles()) {
+            replay.delete();
+        }
+        directory.delete();
+    }
+    
+    @Test
+    public void testReplayKeepsBatches() throws Exception {
+        java.io.File directory = java.nio.file.Files.createTempDirectory("replays").toFile();
+        MinesweeperEngine engine = new MinesweeperEngine(9, 9, 10, 4L);
+        Replay.Recorder recorder = Replay.record(directory, 'B', engine, -1);
+        int[] moves = { MinesweeperEngine.move(0, Replay.REVEAL),
+                MinesweeperEngine.move(1, Replay.FLAG), MinesweeperEngine.move(2, Replay.FLAG),
+                MinesweeperEngine.move(3, Replay.FLAG) };
+        
+        // batches made in the same millisecond stay apart
+        recorder.batch(5, moves, 0, 1);
+        recorder.batch(5, moves, 1, 3);
+        recorder.move(5, 3, Replay.FLAG);
+        recorder.close();
+        Replay.finishWrites();
+        java.io.File[] files = directory.listFiles();
+        Replay replay = Replay.read(files[0]);
+        assertEquals(4, replay.numMoves());
+        assertArrayEquals(moves, replay.getMoves());
+        assertEquals(1, replay.batchEnd(0));
+        assertEquals(3, replay.batchEnd(1));
+        assertEquals(3, replay.batchEnd(2));
+        assertEquals(4, replay.batchEnd(3));
+        assertEquals(5, replay.time(3));
+        
+        files[0].delete();
+        directory.delete();
+    }
+    
+    @Test
+    public void testReplayFolderIsCapped() throws Exception {
+        java.io.File directory = java.nio.file.Files.createTempDirectory("replays").toFile();
+        for (int i = 0; i < Replay.MAX_REPLAYS; i++) {
+            new java.io.File(directory, "game-" + (1000000000000L + i) + "-0.replay")
+                    .createNewFile();
+        }
+        recordWin(directory, "Ann");
+        Replay.Recorder recorder = Replay.record(directory, 'B',
+                new MinesweeperEngine(9, 9, 10, 1L), -1);
+        recorder.move(0, 40, Replay.REVEAL);
+        recorder.close();
+        Replay.finishWrites();
+        
+        // the oldest game made room for the new one, and the win is kept apart
+        assertEquals(Replay.MAX_REPLAYS + 1, directory.listFiles().length);
+        assertFalse(new java.io.File(directory, "game-1000000000000-0.replay").exists());
+        assertTrue(new java.io.File(directory, "game-1000000000001-0.replay").exists());
+        
+        for (java.io.File replay : directory.listFiles()) {
+            replay.delete();
+        }
+        directory.delete();
+    }
+    
+    @Test(expected = java.io.IOException.class)
+    public void testReplayCutShort() throws Exception {
+        Replay.read(java.nio.ByteBuffer.wrap(new byte[] { 0x4d, 0x53, 0x52, 0x50, 2, 'B', 9 }));
+    }
+    
+    // ENDLESS TESTS
+    @Test
+    public void testEndlessSameSeedSameBombs() {
+        EndlessEngine first = new EndlessEngine(99L, 0.2, 16);
+        EndlessEngine second = new EndlessEngine(99L, 0.2, 16);
+        for (int i = -100; i < 100; i += 7) {
+            for (int j = -100; j < 100; j += 5) {
+                assertEquals(first.hasBomb(i, j), second.hasBomb(i, j));
+            }
+        }
+    }
+    
+    @Test
+    public void testEndlessBigOpeningIsFinishedLater() {
+        // an opening of at least 200 Pieces, revealed 50 at a time
+        EndlessEngine whole = null;
+        int opening = 0;
+        long seed = 0;
+        while (opening < 200) {
+            if (whole != null) {
+                whole.close();
+            }
+            whole = new EndlessEngine(++seed, EndlessEngine.MIN_DENSITY, 16);
+            opening = whole.reveal(0, 0);
+        }
+        EndlessEngine steps = new EndlessEngine(seed, EndlessEngine.MIN_DENSITY, 16);
+        steps.maxReveal = 50;
+        int revealed = steps.reveal(0, 0);
+        assertTrue(revealed < opening);
+        assertTrue(steps.isRevealPending());
+        while (steps.isRevealPending()) {
+            int more = steps.revealPending();
+            assertTrue(more > 0);
+            revealed += more;
+        }
+        assertFalse(whole.isRevealPending());
+        assertEquals(opening, revealed);
+        assertEquals(whole.numRevealed(), steps.numRevealed());
+        for (int i = -100; i <= 100; i++) {
+            for (int j = -100; j <= 100; j++) {
+                assertEquals(whole.isRevealed(i, j), steps.isRevealed(i, j));
+            }
+        }
+        whole.close();
+        steps.close();
+    }
+    
+    @Test
+    public void testEndlessEvictedChunksKeepState() {
+        EndlessEngine engine = new EndlessEngine(5L, 0.2, 9);
+        engine.reveal(0, 0);
+        engine.toggleFlag(-3000, 4000);
+        long revealed = engine.numRevealed();
+        assertTrue(revealed > 0);
+        
+        // visit many chunks far away so that the first ones are evicted
+        for (int k = 1; k <= 50; k++) {
+            engine.isRevealed(k * EndlessEngine.CHUNK_SIZE * 3, 0);
+            engine.toggleFlag(k * EndlessEngine.CHUNK_SIZE * 3, 1);
+        }
+        assertTrue(engine.numChunksInMemory() <= 9);
+        assertTrue(engine.isRevealed(0, 0));
+        assertEquals(0, engine.getNumAdjacent(0, 0));
+        assertTrue(engine.isFlagged(-3000, 4000));
+        assertTrue(engine.isFlagged(EndlessEngine.CHUNK_SIZE * 3, 1));
+        engine.close();
+    }
+    
+    @Test
+    public void testEndlessSpillFileGrows() {
+        // more flagged chunks than the spill file first has room for
+        EndlessEngine engine = new EndlessEngine(6L, 0.2, 9);
+        for (int k = 0; k < 1500; k++) {
+            engine.toggleFlag(k * EndlessEngine.CHUNK_SIZE, -k);
+        }
+        engine.toggleFlag(0, 0);
+        for (int k = 0; k < 1500; k++) {
+            assertEquals(k != 0, engine.isFlagged(k * EndlessEngine.CHUNK_SIZE, -k));
+        }
+        assertEquals(1499, engine.numFlagged());
+        engine.close();
+    }
+    
+    // LEADERBOARD TESTS
+    @Test
+    public void testLeaderboardTopAndRank() throws Exception {
+        java.io.File file = java.io.File.createTempFile("leaderboard", ".dat");
+        file.delete();
+        Leaderboard scores = new Leaderboard(file.getPath());
+        assertEquals(0, scores.add('B', "slow", 90));
+        assertEquals(0, scores.add('B', "fast", 12));
+        assertEquals(1, scores.add('B', "tie", 12));
+        assertEquals(0, scores.add('E', "expert", 300));
+        
+        Leaderboard.Entry[] top = scores.top('B', 5);
+        assertEquals(3, top.length);
+        assertEquals("fast", top[0].name);
+        assertEquals("tie", top[1].name);
+        assertEquals(90, top[2].seconds);
+        assertEquals(2, scores.rank('B', 50));
+        assertEquals(33, scores.percentile('B', 50));
+        assertEquals(1, scores.size('E'));
+        assertEquals(0, scores.top('I', 5).length);
+        scores.close();
+        file.delete();
+    }
+    
+    @Test
+    public void testLeaderboardGrowsAndReopens() throws Exception {
+        java.io.File file = java.io.File.createTempFile("leaderboard", ".dat");
+        file.delete();
+        Leaderboard scores = new Leaderboard(file.getPath());
+        for (int i = 0; i < 5000; i++) {
+            scores.add('I', "player" + i, 5000 - i);
+        }
+        scores.close();
+        
+        scores = new Leaderboard(file.getPath());
+        assertEquals(5000, scores.size('I'));
+        Leaderboard.Entry[] top = scores.top('I', 3);
+        assertEquals("player4999", top[0].name);
+        assertEquals(2, top[1].seconds);
+        assertEquals(4, scores.add('I', "new", 4));
+        scores.close();
+        file.delete();
+    }
+    
+    @Test
+    public void testLeaderboardRefreshSeesOtherWriters() throws Exception {
+        java.io.File file = java.io.File.createTempFile("leaderboard", ".dat");
+        file.delete();
+        Leaderboard mine = new Leaderboard(file.getPath());
+        Leaderboard theirs = new Leaderboard(file.getPath());
+        mine.add('B', "me", 30);
+        int version = mine.version();
+        assertFalse(mine.refresh());
+        
+        // enough games to make the file larger than mine has mapped
+        for (int i = 0; i < 3000; i++) {
+            theirs.add('B', "them", 20);
+        }
+        assertTrue(mine.refresh());
+        assertTrue(mine.version() != version);
+        assertEquals(3001, mine.size('B'));
+        assertEquals("them", mine.top('B', 1)[0].name);
+        assertEquals(3000, mine.rank('B', 29));
+        mine.close();
+        theirs.close();
+        file.delete();
+    }
+    
+    @Test
+    public void testLeaderboardConcurrentWritersLoseNothing() throws Exception {
+        final java.io.File file = java.io.File.createTempFile("leaderboard", ".dat");
+        file.delete();
+        new Leaderboard(file.getPath()).close();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int player = t;
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        Leaderboard scores = new Leaderboard(file.getPath());
+                        for (int i = 0; i < 500; i++) {
+                            scores.submit('E', "player" + player, i);
+                        }
+                        scores.close();
+                    } catch (java.io.IOException e) {
+                        fail(e.getMessage());
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Leaderboard scores = new Leaderboard(file.getPath());
+        assertEquals(2000, scores.size('E'));
+        assertEquals(4, scores.rank('E', 0));
+        scores.close();
+        file.delete();
+    }
+    
+    @Test
+    public void testLeaderboardSubmitAfterCloseIsRejected() throws Exception {
+        java.io.File file = java.io.File.createTempFile("leaderboard", ".dat");
+        file.delete();
+        Leaderboard scores = new Leaderboard(file.getPath());
+        assertTrue(scores.submit('B', "before", 10));
+        scores.close();
+        assertFalse(scores.submit('B', "after", 5));
+        scores.close();
+        
+        scores = new Leaderboard(file.getPath());
+        assertEquals(1, scores.size('B'));
+        assertEquals("before", scores.top('B', 1)[0].name);
+        scores.close();
+        file.delete();
+    }
+    
+    @Test
+    public void testLeaderboardImportsText() throws Exception {
+        java.io.File text = java.io.File.createTempFile("highscores", ".txt");
+        java.io.Writer out = new java.io.FileWriter(text);
+        out.write("High Scores\nBeginner\n1. Ann: 7 seconds\n2. Bo: 9 seconds\n3.\n4.\n5.\n"
+                + "Intermediate\n1.\n2.\n3.\n4.\n5.\nExpert\n1. Cy: 200 seconds\n2.\n");
+        out.close();
+        java.io.File file = java.io.File.createTempFile("leaderboard", ".dat");
+        file.delete();
+        Leaderboard scores = new Leaderboard(file.getPath());
+        scores.importText(text.getPath());
+        assertEquals(3, scores.size());
+        assertEquals("Ann", scores.top('B', 5)[0].name);
+        assertEquals(9, scores.top('B', 5)[1].seconds);
+        assertEquals("Cy", scores.top('E', 5)[0].name);
+        scores.close();
+        file.delete();
+        text.delete();
+    }
+    
     // PIECE TESTS
     @Test
     public void testSIZEisPublic() {
@@ -105,6 +1320,17 @@ public class MinesweeperTest {
         assertEquals(true, piece.getLeft());
     }
     
+    @Test
+    public void testDrawUsesTiles() {
+        java.awt.image.BufferedImage image = new java.awt.image.BufferedImage(40, 40,
+                java.awt.image.BufferedImage.TYPE_INT_RGB);
+        java.awt.Graphics g = image.getGraphics();
+        new Piece(false, false, false, 0, 0).draw(g);
+        new Piece(false, false, true, 20, 20).draw(g);
+        assertEquals(java.awt.Color.GRAY.getRGB(), image.getRGB(7, 1));
+        assertEquals(java.awt.Color.BLUE.getRGB(), image.getRGB(27, 27));
+    }
+    
     @Test
     public void testGetRight() {
         Piece piece = new Piece(true, false, true, 20, 40);
@@ -0,0 +1,315 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * NoGuessGenerator
+ *
+ * Makes boards that can be solved from the first click without guessing: random layouts are
+ * played by a Solver (which only makes certain moves), and only layouts it wins are kept. Since
+ * many layouts are thrown away (most Expert ones), worker threads (one per spare core) keep a
+ * small pool of checked boards ready for each size that has been asked for, so that starting a new
+ * game only takes one from the pool.
+ *
+ * A board is a seed and a first Piece: MinesweeperEngine places the same bombs for the same seed
+ * and first Piece, so the engine can rebuild the checked layout with placeBombs().
+ */
+public class NoGuessGenerator {
+    public static final int POOL_SIZE = 8;
+
+    // after this many layouts in a row fail, the size is given up on (e.g. boards so full of
+    // bombs that they almost always need a guess)
+    public static final int MAX_ATTEMPTS = 20000;
+
+    private static NoGuessGenerator shared;
+
+    private final Map<String, Pool> pools = new HashMap<String, Pool>();
+    private final List<Pool> poolList = new ArrayList<Pool>();
+    private boolean stopped;
+
+    /**
+     * Layout
+     *
+     * A board that can be solved without guessing: the seed of its bombs and the Piece to reveal
+     * first
+     */
+    public static class Layout {
+        public final int numRows;
+        public final int numCols;
+        public final int numBombs;
+        public final long seed;
+        public final int start;
+
+        Layout(int numRows, int numCols, int numBombs, long seed, int start) {
+            this.numRows = numRows;
+            this.numCols = numCols;
+            this.numBombs = numBombs;
+            this.seed = seed;
+            this.start = start;
+        }
+    }
+
+    /**
+     * Pool
+     *
+     * The checked boards ready for one size; guarded by the generator's lock
+     */
+    private static class Pool {
+        final int numRows;
+        final int numCols;
+        final int numBombs;
+        final ArrayDeque<Layout> ready = new ArrayDeque<Layout>();
+        int failures;
+        boolean impossible;
+
+        Pool(int numRows, int numCols, int numBombs) {
+            this.numRows = numRows;
+            this.numCols = numCols;
+            this.numBombs = numBombs;
+        }
+
+        boolean needsBoards() {
+            return !impossible && ready.size() < POOL_SIZE;
+        }
+    }
+
+    /**
+     * constructor starts the given number of worker threads, which wait until a size is asked for
+     *
+     * @param int threads: the number of worker threads
+     */
+    public NoGuessGenerator(int threads) {
+        for (int t = 0; t < threads; t++) {
+            final long seed = new SplittableRandom().nextLong();
+            Thread worker = new Thread(new Runnable() {
+                public void run() {
+                    work(new SplittableRandom(seed));
+                }
+            }, "no guess generator " + t);
+            worker.setDaemon(true);
+            worker.setPriority(Thread.MIN_PRIORITY);
+            worker.start();
+        }
+    }
+
+    /**
+     * shared() returns the generator shared by the whole program, starting it the first time (with
+     * a worker for each core but one, and at least one)
+     *
+     * @return NoGuessGenerator shared: the shared generator
+     */
+    public static synchronized NoGuessGenerator shared() {
+        if (shared == null) {
+            shared = new NoGuessGenerator(
+                    Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        }
+        return shared;
+    }
+
+    /**
+     * prepare(int numRows, int numCols, int numBombs) starts filling the pool for a size, so that
+     * boards of that size are ready when they are needed
+     *
+     * @param int numRows: the number of rows
+     * @param int numCols: the number of columns
+     * @param int numBombs: the number of bombs
+     */
+    public synchronized void prepare(int numRows, int numCols, int numBombs) {
+        pool(numRows, numCols, numBombs);
+        notifyAll();
+    }
+
+    /**
+     * take(int numRows, int numCols, int numBombs) returns a ready board that can be solved
+     * without guessing, and starts filling the pool for its size; it never waits, so it can be
+     * called on the event thread
+     *
+     * @param int numRows: the number of rows
+     * @param int numCols: the number of columns
+     * @param int numBombs: the number of bombs
+     * @return Layout layout: the board, or null if none is ready (or the size has been given up
+     *         on)
+     */
+    public synchronized Layout take(int numRows, int numCols, int numBombs) {
+        Layout layout = pool(numRows, numCols, numBombs).ready.poll();
+        // wake the workers to replace it
+        notifyAll();
+        return layout;
+    }
+
+    /**
+     * find(int numRows, int numCols, int numBombs, long maxMillis) returns a board like take(),
+     * but if none is ready, looks for one on the calling thread for at most the given time (so it
+     * is not for the event thread)
+     *
+     * @param int numRows: the number of rows
+     * @param int numCols: the number of columns
+     * @param int numBombs: the number of bombs
+     * @param long maxMillis: the longest to look for a board
+     * @return Layout layout: the board, or null if none was found in time (or the size has been
+     *         given up on)
+     */
+    public Layout find(int numRows, int numCols, int numBombs, long maxMillis) {
+        synchronized (this) {
+            Layout layout = take(numRows, numCols, numBombs);
+            if (layout != null || pool(numRows, numCols, numBombs).impossible) {
+                return layout;
+            }
+        }
+
+        MinesweeperEngine engine = new MinesweeperEngine(numRows, numCols, numBombs, 0L);
+        Solver solver = new Solver(engine);
+        SplittableRandom random = new SplittableRandom();
+        long deadline = System.nanoTime() + maxMillis * 1000000L;
+        do {
+            Layout layout = attempt(engine, solver, random);
+            if (layout != null) {
+                return layout;
+            }
+        } while (System.nanoTime() < deadline);
+        return null;
+    }
+
+    /**
+     * numReady(int numRows, int numCols, int numBombs) returns the number of boards of a size in
+     * the pool
+     *
+     * @return int ready: the number of boards ready
+     */
+    public synchronized int numReady(int numRows, int numCols, int numBombs) {
+        return pool(numRows, numCols, numBombs).ready.size();
+    }
+
+    /**
+     * shutdown() stops the worker threads
+     */
+    public synchronized void shutdown() {
+        stopped = true;
+        notifyAll();
+    }
+
+    /**
+     * pool(int numRows, int numCols, int numBombs) returns the pool for a size, creating it if
+     * needed; the caller must hold the lock
+     */
+    private Pool pool(int numRows, int numCols, int numBombs) {
+        String key = numRows + "x" + numCols + "x" + numBombs;
+        Pool pool = pools.get(key);
+        if (pool == null) {
+            pool = new Pool(numRows, numCols, numBombs);
+            pools.put(key, pool);
+            poolList.add(pool);
+        }
+        return pool;
+    }
+
+    /**
+     * work(SplittableRandom random) fills pools until the generator is shut down; run by each
+     * worker thread, which checks layouts on its own engine and only takes the lock to pick a pool
+     * and to add a board
+     */
+    private void work(SplittableRandom random) {
+        MinesweeperEngine engine = null;
+        Solver solver = null;
+        while (true) {
+            Pool pool;
+            synchronized (this) {
+                pool = next();
+                while (pool == null && !stopped) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    pool = next();
+                }
+                if (stopped) {
+                    return;
+                }
+            }
+
+            if (engine == null) {
+                engine = new MinesweeperEngine(pool.numRows, pool.numCols, pool.numBombs, 0L);
+                solver = new Solver(engine);
+            } else {
+                engine.reset(pool.numRows, pool.numCols, pool.numBombs);
+            }
+            Layout layout = attempt(engine, solver, random);
+
+            synchronized (this) {
+                if (layout == null) {
+                    if (++pool.failures >= MAX_ATTEMPTS) {
+                        pool.impossible = true;
+                    }
+                } else {
+                    pool.failures = 0;
+                    if (pool.ready.size() < POOL_SIZE) {
+                        pool.ready.add(layout);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * next() returns the emptiest pool that needs boards, or null; the caller must hold the lock
+     */
+    private Pool next() {
+        Pool next = null;
+        for (Pool pool : poolList) {
+            if (pool.needsBoards() && (next == null || pool.ready.size() < next.ready.size())) {
+                next = pool;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * attempt(MinesweeperEngine engine, Solver solver, SplittableRandom random) tries one random
+     * layout at the engine's size and returns it if it can be solved without guessing
+     */
+    private static Layout attempt(MinesweeperEngine engine, Solver solver,
+            SplittableRandom random) {
+        int numRows = engine.getNumRows();
+        int numCols = engine.getNumCols();
+        long seed = random.nextLong();
+        int start = random.nextInt(numRows * numCols);
+        engine.reset(numRows, numCols, engine.getNumBombs(), seed);
+        return solvable(engine, solver, start)
+                ? new Layout(numRows, numCols, engine.getNumBombs(), seed, start) : null;
+    }
+
+    /**
+     * solvable(MinesweeperEngine engine, Solver solver, int start) plays a new game from the given
+     * first Piece making only the Solver's certain moves, and returns true if that wins it
+     *
+     * @param MinesweeperEngine engine: a game that has not been started
+     * @param Solver solver: a solver for the engine
+     * @param int start: the first Piece to reveal (as row * numCols + col)
+     * @return boolean solvable: true if the game can be won without guessing
+     */
+    public static boolean solvable(MinesweeperEngine engine, Solver solver, int start) {
+        int numCols = engine.getNumCols();
+        solver.reset();
+        // reveal() may replace the array getRevealedCells() returns, so it is asked for after
+        int n = engine.reveal(start / numCols, start % numCols);
+        solver.revealed(engine.getRevealedCells(), n);
+        while (engine.status() == MinesweeperEngine.Status.PLAYING) {
+            int cell = solver.hint();
+            if (cell == -1) {
+                return false;
+            }
+            if (solver.isBomb(cell)) {
+                engine.toggleFlag(cell / numCols, cell % numCols);
+                solver.flagged(cell);
+            } else {
+                n = engine.reveal(cell / numCols, cell % numCols);
+                solver.revealed(engine.getRevealedCells(), n);
+            }
+        }
+        return engine.status() == MinesweeperEngine.Status.WON;
+    }
+}
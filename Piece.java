@@ -1,4 +1,5 @@
 import java.awt.*;
+import java.awt.image.BufferedImage;
 
 /**
  * Piece
@@ -18,6 +19,20 @@ public class Piece {
     
     private boolean gameOver;
     
+    // indices of the pre-rendered tiles for each way a Piece can look (0 to 8 are revealed Pieces
+    // with that many adjacent bombs)
+    private static final int HIDDEN = 9;
+    private static final int FLAG = 10;
+    private static final int BOMB = 11;
+    private static final int FAIL = 12;
+    private static final int WRONG_FLAG = 13;
+    private static final int NUM_TILES = 14;
+    
+    // the tiles, and the size and font they were drawn with
+    private static BufferedImage[] tiles;
+    private static int tileSize;
+    private static Font tileFont;
+    
     /**
      * constructor sets Piece's properties of hasBomb and its position using given values.
      */
@@ -36,33 +51,138 @@ public class Piece {
      * @param graphics context g
      */
     public void draw(Graphics g) {
+        draw(g, x, y, hasBomb, numAdjacent, leftClicked, rightClicked, gameOver);
+    }
+    
+    /**
+     * draw(Graphics g, int x, int y, ...) draws a Piece with the given state at the given position;
+     * used by Board to draw the cells of a MinesweeperEngine without creating a Piece for each one.
+     * Every look a Piece can have is drawn once into a tile (see getTiles), so this just copies the
+     * right tile.
+     * 
+     * @param graphics context g
+     * @param int x: the x position of the Piece
+     * @param int y: the y position of the Piece
+     * @param boolean hasBomb: if the Piece has a bomb or not
+     * @param int numAdjacent: the number of adjacent bombs, or -1 if it has not been found yet
+     * @param boolean leftClicked: if the Piece has been revealed
+     * @param boolean rightClicked: if the Piece is flagged
+     * @param boolean gameOver: if the game is over
+     */
+    public static void draw(Graphics g, int x, int y, boolean hasBomb, int numAdjacent,
+            boolean leftClicked, boolean rightClicked, boolean gameOver) {
+        draw(g, x, y, SIZE, hasBomb, numAdjacent, leftClicked, rightClicked, gameOver);
+    }
+    
+    /**
+     * draw(Graphics g, int x, int y, int size, ...) draws a Piece with the given state at the given
+     * position, scaled to the given size (used when the Board is zoomed)
+     * 
+     * @param int size: the size of the Piece in pixels (SIZE when not zoomed)
+     */
+    public static void draw(Graphics g, int x, int y, int size, boolean hasBomb, int numAdjacent,
+            boolean leftClicked, boolean rightClicked, boolean gameOver) {
+        int tile;
+        if (rightClicked) {
+            tile = gameOver && !hasBomb ? WRONG_FLAG : FLAG;
+        } else if (leftClicked && hasBomb) {
+            tile = FAIL;
+        } else if (gameOver && hasBomb) {
+            tile = BOMB;
+        } else if (numAdjacent != -1) {
+            tile = numAdjacent;
+        } else {
+            tile = HIDDEN;
+        }
+        g.drawImage(getTiles(g, size)[tile], x, y, null);
+    }
+    
+    /**
+     * getTiles(Graphics g, int size) returns the pre-rendered tiles, drawing them first if the
+     * Piece size or the font (which changes with the look and feel) is different from when they
+     * were last drawn
+     * 
+     * @param graphics context g: the context the tiles will be drawn into
+     * @param int size: the size of the Piece in pixels
+     * @return BufferedImage[] tiles: one image for each way a Piece can look
+     */
+    private static BufferedImage[] getTiles(Graphics g, int size) {
+        Font font = g.getFont();
+        if (tiles != null && tileSize == size && tileFont != null && tileFont.equals(font)) {
+            return tiles;
+        }
+        
+        GraphicsConfiguration config = ((Graphics2D) g).getDeviceConfiguration();
+        BufferedImage[] newTiles = new BufferedImage[NUM_TILES];
+        for (int i = 0; i < NUM_TILES; i++) {
+            // the border is drawn one pixel past the size; the shapes are drawn at SIZE and scaled
+            newTiles[i] = config.createCompatibleImage(size + 1, size + 1);
+            Graphics2D tileGraphics = newTiles[i].createGraphics();
+            tileGraphics.scale((double) size / SIZE, (double) size / SIZE);
+            tileGraphics.setFont(font);
+            if (i <= 8) {
+                paint(tileGraphics, 0, 0, false, i, true, false, false);
+            } else if (i == HIDDEN) {
+                paint(tileGraphics, 0, 0, false, -1, false, false, false);
+            } else if (i == FLAG) {
+                paint(tileGraphics, 0, 0, false, -1, false, true, false);
+            } else if (i == BOMB) {
+                paint(tileGraphics, 0, 0, true, -1, false, false, true);
+            } else if (i == FAIL) {
+                paint(tileGraphics, 0, 0, true, -1, true, false, true);
+            } else {
+                paint(tileGraphics, 0, 0, false, -1, false, true, true);
+            }
+            tileGraphics.dispose();
+        }
+        
+        tiles = newTiles;
+        tileSize = size;
+        tileFont = font;
+        return tiles;
+    }
+    
+    /**
+     * clearTiles() throws away the pre-rendered tiles so that they are drawn again; to be called
+     * when the look and feel changes
+     */
+    public static void clearTiles() {
+        tiles = null;
+    }
+    
+    /**
+     * paint(Graphics g, int x, int y, ...) draws a Piece with the given state at the given position
+     * shape by shape; used to draw the tiles
+     */
+    private static void paint(Graphics g, int x, int y, boolean hasBomb, int numAdjacent,
+            boolean leftClicked, boolean rightClicked, boolean gameOver) {
         g.setColor(Color.GRAY);
         g.fillRect(x, y, SIZE, SIZE);
         g.setColor(Color.BLACK);
         g.drawRect(x, y, SIZE, SIZE);
         
         if (numAdjacent != -1) {
-            drawNumber(g, numAdjacent);
+            drawNumber(g, x, y, numAdjacent);
         }
         
         if (gameOver && hasBomb) {
-            drawBomb(g);
+            drawBomb(g, x, y);
         }
         
         if (leftClicked && hasBomb) {
-            drawFail(g);
+            drawFail(g, x, y);
         }
         
         if (leftClicked && !hasBomb) {
-            drawNumber(g, numAdjacent);
+            drawNumber(g, x, y, numAdjacent);
         }
         
         if (rightClicked) {
-            drawFlag(g);
+            drawFlag(g, x, y);
         }
         
         if (rightClicked && gameOver && !hasBomb) {
-            drawWrongFlag(g);
+            drawWrongFlag(g, x, y);
         }
     }
     
@@ -75,6 +195,10 @@ public class Piece {
      * @param graphics context g
      */
     public void drawBomb(Graphics g) {
+        drawBomb(g, x, y);
+    }
+    
+    private static void drawBomb(Graphics g, int x, int y) {
         g.setColor(Color.BLACK);
         g.fillOval(x + 2, y + 2, SIZE - 4, SIZE - 4);
     }
@@ -87,6 +211,10 @@ public class Piece {
      * @param graphics context g
      */
     public void drawFail(Graphics g) {
+        drawFail(g, x, y);
+    }
+    
+    private static void drawFail(Graphics g, int x, int y) {
         g.setColor(Color.RED);
         g.fillOval(x + 2, y + 2, SIZE - 4, SIZE - 4);
     }
@@ -98,6 +226,10 @@ public class Piece {
      * @param graphics context g
      */
     public void drawFlag(Graphics g) {
+        drawFlag(g, x, y);
+    }
+    
+    private static void drawFlag(Graphics g, int x, int y) {
         g.setColor(Color.BLUE);
         g.fillRect(x + 2, y + 2, SIZE - 4, SIZE - 4);
     }
@@ -109,6 +241,10 @@ public class Piece {
      * @param graphics context g
      */
     public void drawWrongFlag(Graphics g) {
+        drawWrongFlag(g, x, y);
+    }
+    
+    private static void drawWrongFlag(Graphics g, int x, int y) {
         g.setColor(Color.RED);
         String s = "X";
         g.drawString(s, x + 4, y + SIZE - 2);
@@ -123,6 +259,10 @@ public class Piece {
      * @param int num; indicates the number of bombs adjacent to the Piece
      */
     public void drawNumber(Graphics g, int num) {
+        drawNumber(g, x, y, num);
+    }
+    
+    private static void drawNumber(Graphics g, int x, int y, int num) {
         if (num == 0) {
             g.setColor(Color.LIGHT_GRAY);
             g.fillRect(x + 2, y + 2, SIZE - 4, SIZE - 4);
@@ -0,0 +1,767 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ProbabilityEngine
+ *
+ * Finds the exact chance that each hidden Piece is a bomb, given what the player can see (the
+ * numbers on revealed Pieces, the flags, and the total number of bombs). Hidden Pieces next to a
+ * revealed number (the frontier) are split into components that share no numbers, and every way
+ * of placing bombs in each component that fits its numbers is counted, with the components (and
+ * large ones in parts) counted in parallel on a ForkJoinPool. The components are then combined,
+ * with the ways of placing the rest of the bombs among the other hidden Pieces (the interior)
+ * counted with binomial coefficients.
+ *
+ * Like Solver, flags are trusted. Components with more than MAX_COMPONENT Pieces are too big to
+ * count; their Pieces are treated as part of the interior, so their chances are estimates. The
+ * number of placements can still grow as 2^MAX_COMPONENT, so counting stops after MAX_COUNT_MILLIS
+ * (hint() waits for it on the event thread), and components not finished by then join the
+ * interior too.
+ */
+public class ProbabilityEngine {
+    public static final int MAX_COMPONENT = 64;
+    public static final int MAX_COUNT_MILLIS = 30;
+
+    // components with at least SPLIT_CELLS Pieces are counted by up to 2^SPLIT_DEPTH tasks
+    private static final int SPLIT_CELLS = 20;
+    private static final int SPLIT_DEPTH = 4;
+
+    // the search looks at the clock every CHECK_STEPS + 1 steps
+    private static final int CHECK_STEPS = (1 << 12) - 1;
+
+    private final MinesweeperEngine engine;
+    private final ForkJoinPool pool;
+
+    // the chance of the Piece the last call to leastLikely() returned
+    private double leastChance;
+
+    /**
+     * constructor makes a probability engine for the given game, which uses the common ForkJoinPool
+     *
+     * @param MinesweeperEngine engine: the game
+     */
+    public ProbabilityEngine(MinesweeperEngine engine) {
+        this(engine, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * constructor makes a probability engine for the given game, which counts in the given pool
+     *
+     * @param MinesweeperEngine engine: the game
+     * @param ForkJoinPool pool: the pool to count in
+     */
+    public ProbabilityEngine(MinesweeperEngine engine, ForkJoinPool pool) {
+        this.engine = engine;
+        this.pool = pool;
+    }
+
+    /**
+     * Component
+     *
+     * Frontier Pieces that share numbers, and the numbers: for each Piece the numbers next to it,
+     * and for each number the bombs it still needs and its number of hidden neighbors
+     */
+    private static class Component {
+        final int[] cells;
+        final int[][] constraints;
+        final int[] needed;
+        final int[] size;
+
+        // the number of ways to place k bombs in the component, and for each Piece the number of
+        // those ways that have a bomb on it; then the chance that each Piece is a bomb
+        double[] counts;
+        double[][] cellCounts;
+        double[] chances;
+
+        // when counting has to stop, and whether it did before the component was counted
+        long deadline;
+        volatile boolean abandoned;
+
+        Component(int[] cells, int[][] constraints, int[] needed, int[] size) {
+            this.cells = cells;
+            this.constraints = constraints;
+            this.needed = needed;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Enumeration
+     *
+     * Counts the ways of placing bombs in a component, given the Pieces before start have already
+     * been decided; splits itself into a task for each choice of the next Piece while it is near
+     * the top of a big search
+     */
+    @SuppressWarnings("serial")
+    private static class Enumeration extends RecursiveAction {
+        private final Component component;
+        private final int start;
+        private final int startBombs;
+        private final int depth;
+        private final int[] needed;
+        private final int[] free;
+        private final boolean[] bomb;
+        private int steps;
+
+        final double[] counts;
+        final double[][] cellCounts;
+
+        Enumeration(Component component, int start, int startBombs, int depth, int[] needed,
+                int[] free, boolean[] bomb) {
+            this.component = component;
+            this.start = start;
+            this.startBombs = startBombs;
+            this.depth = depth;
+            this.needed = needed;
+            this.free = free;
+            this.bomb = bomb;
+            int n = component.cells.length;
+            counts = new double[n + 1];
+            cellCounts = new double[n][n + 1];
+        }
+
+        @Override
+        protected void compute() {
+            int n = component.cells.length;
+            if (depth >= SPLIT_DEPTH || n < SPLIT_CELLS || start == n) {
+                search(start, startBombs);
+                return;
+            }
+
+            // one task with the next Piece safe and one with it a bomb
+            List<Enumeration> tasks = new ArrayList<Enumeration>();
+            for (int choice = 0; choice < 2; choice++) {
+                int[] childNeeded = needed.clone();
+                int[] childFree = free.clone();
+                boolean[] childBomb = bomb.clone();
+                childBomb[start] = choice == 1;
+                if (assign(component.constraints[start], choice == 1, childNeeded, childFree)) {
+                    tasks.add(new Enumeration(component, start + 1, startBombs + choice,
+                            depth + 1, childNeeded, childFree, childBomb));
+                }
+            }
+            invokeAll(tasks);
+            if (component.abandoned) {
+                return;
+            }
+            for (Enumeration task : tasks) {
+                for (int k = 0; k <= n; k++) {
+                    counts[k] += task.counts[k];
+                }
+                for (int i = 0; i < n; i++) {
+                    for (int k = 0; k <= n; k++) {
+                        cellCounts[i][k] += task.cellCounts[i][k];
+                    }
+                }
+            }
+        }
+
+        /**
+         * search(int i, int bombs) counts every way of deciding the Pieces from i on
+         */
+        private void search(int i, int bombs) {
+            if ((++steps & CHECK_STEPS) == 0 && System.nanoTime() > component.deadline) {
+                component.abandoned = true;
+            }
+            if (component.abandoned) {
+                return;
+            }
+            int n = component.cells.length;
+            if (i == n) {
+                counts[bombs]++;
+                for (int j = 0; j < n; j++) {
+                    if (bomb[j]) {
+                        cellCounts[j][bombs]++;
+                    }
+                }
+                return;
+            }
+            int[] constraints = component.constraints[i];
+            if (assign(constraints, false, needed, free)) {
+                search(i + 1, bombs);
+            }
+            unassign(constraints, false, needed, free);
+            bomb[i] = true;
+            if (assign(constraints, true, needed, free)) {
+                search(i + 1, bombs + 1);
+            }
+            unassign(constraints, true, needed, free);
+            bomb[i] = false;
+        }
+    }
+
+    /**
+     * assign(int[] constraints, boolean isBomb, int[] needed, int[] free) decides a Piece and
+     * returns false if one of its numbers can no longer be satisfied (the changes are made either
+     * way, so that unassign() can undo them)
+     */
+    private static boolean assign(int[] constraints, boolean isBomb, int[] needed, int[] free) {
+        boolean ok = true;
+        for (int j : constraints) {
+            free[j]--;
+            if (isBomb) {
+                needed[j]--;
+            }
+            if (needed[j] < 0 || needed[j] > free[j]) {
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * unassign(int[] constraints, boolean isBomb, int[] needed, int[] free) undoes assign()
+     */
+    private static void unassign(int[] constraints, boolean isBomb, int[] needed, int[] free) {
+        for (int j : constraints) {
+            free[j]++;
+            if (isBomb) {
+                needed[j]++;
+            }
+        }
+    }
+
+    /**
+     * Chances
+     *
+     * What count() found: the components that were counted (with the chance of each of their
+     * Pieces), and the chance of every other hidden Piece (the interior)
+     */
+    private static class Chances {
+        final List<Component> counted;
+        final Map<Integer, Integer> frontier;
+        final boolean[] inCounted;
+        final int numInterior;
+        final double interior;
+
+        Chances(List<Component> counted, Map<Integer, Integer> frontier, int numInterior,
+                double interior) {
+            this.counted = counted;
+            this.frontier = frontier;
+            this.numInterior = numInterior;
+            this.interior = interior;
+            inCounted = new boolean[frontier.size()];
+            for (Component component : counted) {
+                for (int cell : component.cells) {
+                    inCounted[frontier.get(cell)] = true;
+                }
+            }
+        }
+
+        /**
+         * isInterior(int cell) returns true if a hidden Piece has the interior's chance
+         */
+        boolean isInterior(int cell) {
+            Integer id = frontier.get(cell);
+            return id == null || !inCounted[id];
+        }
+    }
+
+    /**
+     * probabilities() returns the chance that each Piece is a bomb: 0 for revealed Pieces, 1 for
+     * flagged Pieces, and between 0 and 1 for hidden Pieces
+     *
+     * @return double[] probabilities: the chance for each Piece (at row * numCols + col), or null
+     *         if no placement of the bombs fits the numbers and flags
+     */
+    public double[] probabilities() {
+        Chances chances = count();
+        if (chances == null) {
+            return null;
+        }
+        int numRows = engine.getNumRows();
+        int numCols = engine.getNumCols();
+        double[] probabilities = new double[numRows * numCols];
+        for (Component component : chances.counted) {
+            for (int j = 0; j < component.cells.length; j++) {
+                probabilities[component.cells[j]] = component.chances[j];
+            }
+        }
+        for (int row = 0; row < numRows; row++) {
+            for (int col = 0; col < numCols; col++) {
+                int cell = row * numCols + col;
+                if (engine.isFlagged(row, col)) {
+                    probabilities[cell] = 1;
+                } else if (!engine.isRevealed(row, col) && chances.isInterior(cell)) {
+                    probabilities[cell] = chances.interior;
+                }
+            }
+        }
+        return probabilities;
+    }
+
+    /**
+     * leastLikely() returns the hidden Piece least likely to be a bomb. Unlike probabilities(), it
+     * keeps chances only for the frontier Pieces, so it needs no memory for the whole board.
+     *
+     * @return int cell: the Piece (as row * numCols + col), or -1 if there are no hidden Pieces or
+     *         no placement of the bombs fits the numbers and flags
+     */
+    public int leastLikely() {
+        Chances chances = count();
+        leastChance = 1;
+        if (chances == null) {
+            return -1;
+        }
+        int best = -1;
+        double bestChance = 2;
+        for (Component component : chances.counted) {
+            for (int j = 0; j < component.cells.length; j++) {
+                if (component.chances[j] < bestChance) {
+                    best = component.cells[j];
+                    bestChance = component.chances[j];
+                }
+            }
+        }
+        if (chances.numInterior == 0 || bestChance <= chances.interior) {
+            leastChance = Math.min(1, bestChance);
+            return best;
+        }
+        leastChance = chances.interior;
+
+        // the first interior Piece
+        int numRows = engine.getNumRows();
+        int numCols = engine.getNumCols();
+        for (int row = 0; row < numRows; row++) {
+            for (int col = 0; col < numCols; col++) {
+                if (!engine.isRevealed(row, col) && !engine.isFlagged(row, col)
+                        && chances.isInterior(row * numCols + col)) {
+                    return row * numCols + col;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * leastLikelyChance() returns the chance that the Piece the last call to leastLikely() returned
+     * is a bomb
+     *
+     * @return double chance: the chance, or 1 if it returned -1
+     */
+    public double leastLikelyChance() {
+        return leastChance;
+    }
+
+    /**
+     * count() finds the frontier, counts the components small enough to count, and works out the
+     * chance of each of their Pieces and of the interior
+     *
+     * @return Chances chances: the chances, or null if no placement of the bombs fits the numbers
+     *         and flags
+     */
+    private Chances count() {
+        int numRows = engine.getNumRows();
+        int numCols = engine.getNumCols();
+
+        // find the numbers with hidden neighbors, and number the frontier Pieces
+        Map<Integer, Integer> frontier = new HashMap<Integer, Integer>();
+        List<Integer> frontierCells = new ArrayList<Integer>();
+        List<int[]> constraintCells = new ArrayList<int[]>();
+        List<Integer> constraintNeeded = new ArrayList<Integer>();
+        int hidden = 0;
+        int flags = 0;
+        int[] neighbors = new int[8];
+        for (int row = 0; row < numRows; row++) {
+            for (int col = 0; col < numCols; col++) {
+                int cell = row * numCols + col;
+                if (engine.isFlagged(row, col)) {
+                    flags++;
+                    continue;
+                }
+                if (!engine.isRevealed(row, col)) {
+                    hidden++;
+                    continue;
+                }
+                int needed = engine.getNumAdjacent(row, col);
+                int numHidden = 0;
+                for (int i = Math.max(0, row - 1); i <= Math.min(numRows - 1, row + 1); i++) {
+                    for (int j = Math.max(0, col - 1); j <= Math.min(numCols - 1, col + 1); j++) {
+                        if (engine.isFlagged(i, j)) {
+                            needed--;
+                        } else if (!engine.isRevealed(i, j)) {
+                            neighbors[numHidden++] = i * numCols + j;
+                        }
+                    }
+                }
+                if (numHidden == 0) {
+                    continue;
+                }
+                int[] ids = new int[numHidden];
+                for (int k = 0; k < numHidden; k++) {
+                    Integer id = frontier.get(neighbors[k]);
+                    if (id == null) {
+                        id = frontierCells.size();
+                        frontier.put(neighbors[k], id);
+                        frontierCells.add(neighbors[k]);
+                    }
+                    ids[k] = id;
+                }
+                constraintCells.add(ids);
+                constraintNeeded.add(needed);
+            }
+        }
+
+        // join frontier Pieces that share a number
+        int[] parent = new int[frontierCells.size()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        for (int[] ids : constraintCells) {
+            for (int k = 1; k < ids.length; k++) {
+                parent[find(parent, ids[k])] = find(parent, ids[0]);
+            }
+        }
+        List<Component> components = components(parent, frontierCells, constraintCells,
+                constraintNeeded);
+
+        // count the components that are small enough and finish in time; the rest join the interior
+        int interior = hidden;
+        long deadline = System.nanoTime() + MAX_COUNT_MILLIS * 1000000L;
+        List<Enumeration> tasks = new ArrayList<Enumeration>();
+        List<Component> started = new ArrayList<Component>();
+        List<Component> counted = new ArrayList<Component>();
+        for (Component component : components) {
+            if (component.cells.length > MAX_COMPONENT) {
+                continue;
+            }
+            interior -= component.cells.length;
+            component.deadline = deadline;
+            started.add(component);
+            tasks.add(new Enumeration(component, 0, 0, 0, component.needed.clone(),
+                    component.size.clone(), new boolean[component.cells.length]));
+        }
+        for (Enumeration task : tasks) {
+            pool.execute(task);
+        }
+        for (int c = 0; c < tasks.size(); c++) {
+            tasks.get(c).join();
+            Component component = started.get(c);
+            if (component.abandoned) {
+                interior += component.cells.length;
+                continue;
+            }
+            counted.add(component);
+            component.counts = tasks.get(c).counts;
+            component.cellCounts = tasks.get(c).cellCounts;
+            if (!normalize(component)) {
+                return null;
+            }
+        }
+
+        if (!combine(counted, interior, engine.getNumBombs() - flags)) {
+            return null;
+        }
+
+        // every Piece not counted gets the interior's chance
+        return new Chances(counted, frontier, interior,
+                interiorChance(counted, interior, engine.getNumBombs() - flags));
+    }
+
+    /**
+     * components(...) groups the frontier Pieces and numbers into components, ordering each
+     * component's Pieces so that each number's Pieces come close together (so that the search can
+     * rule out placements early)
+     */
+    private static List<Component> components(int[] parent, List<Integer> frontierCells,
+            List<int[]> constraintCells, List<Integer> constraintNeeded) {
+        // the numbers on each frontier Piece
+        int n = frontierCells.size();
+        List<List<Integer>> cellConstraints = new ArrayList<List<Integer>>();
+        for (int i = 0; i < n; i++) {
+            cellConstraints.add(new ArrayList<Integer>());
+        }
+        for (int j = 0; j < constraintCells.size(); j++) {
+            for (int id : constraintCells.get(j)) {
+                cellConstraints.get(id).add(j);
+            }
+        }
+
+        List<Component> components = new ArrayList<Component>();
+        boolean[] visited = new boolean[n];
+        boolean[] constraintVisited = new boolean[constraintCells.size()];
+        int[] order = new int[n];
+        int[] position = new int[n];
+        for (int root = 0; root < n; root++) {
+            if (visited[root] || find(parent, root) != root) {
+                continue;
+            }
+            // breadth first from the root, a number at a time
+            int size = 0;
+            int head = 0;
+            List<Integer> constraints = new ArrayList<Integer>();
+            order[size++] = root;
+            visited[root] = true;
+            while (head < size) {
+                int id = order[head++];
+                for (int j : cellConstraints.get(id)) {
+                    if (constraintVisited[j]) {
+                        continue;
+                    }
+                    constraintVisited[j] = true;
+                    constraints.add(j);
+                    for (int other : constraintCells.get(j)) {
+                        if (!visited[other]) {
+                            visited[other] = true;
+                            order[size++] = other;
+                        }
+                    }
+                }
+            }
+
+            int[] cells = new int[size];
+            for (int i = 0; i < size; i++) {
+                cells[i] = frontierCells.get(order[i]);
+                position[order[i]] = i;
+            }
+            int[] needed = new int[constraints.size()];
+            int[] sizes = new int[constraints.size()];
+            List<List<Integer>> local = new ArrayList<List<Integer>>();
+            for (int i = 0; i < size; i++) {
+                local.add(new ArrayList<Integer>());
+            }
+            for (int k = 0; k < constraints.size(); k++) {
+                int j = constraints.get(k);
+                needed[k] = constraintNeeded.get(j);
+                sizes[k] = constraintCells.get(j).length;
+                for (int id : constraintCells.get(j)) {
+                    local.get(position[id]).add(k);
+                }
+            }
+            int[][] cellLists = new int[size][];
+            for (int i = 0; i < size; i++) {
+                cellLists[i] = new int[local.get(i).size()];
+                for (int k = 0; k < cellLists[i].length; k++) {
+                    cellLists[i][k] = local.get(i).get(k);
+                }
+            }
+            components.add(new Component(cells, cellLists, needed, sizes));
+        }
+        return components;
+    }
+
+    /**
+     * find(int[] parent, int i) returns the root of i's set, halving the path as it goes
+     */
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * normalize(Component component) scales a component's counts so that the largest is 1 (which
+     * does not change any chances, but keeps products of many components from overflowing);
+     * returns false if the component has no placements at all
+     */
+    private static boolean normalize(Component component) {
+        double max = 0;
+        for (double count : component.counts) {
+            max = Math.max(max, count);
+        }
+        if (max == 0) {
+            return false;
+        }
+        for (int k = 0; k < component.counts.length; k++) {
+            component.counts[k] /= max;
+        }
+        for (double[] cellCount : component.cellCounts) {
+            for (int k = 0; k < cellCount.length; k++) {
+                cellCount[k] /= max;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * combine(List<Component> components, int interior, int bombsLeft) finds the chance for each
+     * Piece in the components: the ways with a bomb on the Piece over
+     * all ways, where each way of placing k bombs in a component is weighted by the ways of
+     * placing bombs in the other components, and of placing the rest in the interior. Returns
+     * false if there are no ways at all.
+     */
+    private static boolean combine(List<Component> components, int interior, int bombsLeft) {
+        int c = components.size();
+        double[] weights = interiorWeights(components, interior, bombsLeft);
+
+        // products of the counts of the components before and after each one
+        double[][] before = new double[c + 1][];
+        double[][] after = new double[c + 1][];
+        before[0] = new double[] { 1 };
+        after[c] = new double[] { 1 };
+        for (int i = 0; i < c; i++) {
+            before[i + 1] = convolve(before[i], components.get(i).counts);
+        }
+        for (int i = c - 1; i >= 0; i--) {
+            after[i] = convolve(components.get(i).counts, after[i + 1]);
+        }
+
+        double all = 0;
+        for (int k = 0; k < before[c].length; k++) {
+            all += before[c][k] * weights[k];
+        }
+        if (all == 0) {
+            return false;
+        }
+
+        for (int i = 0; i < c; i++) {
+            Component component = components.get(i);
+            double[] others = convolve(before[i], after[i + 1]);
+            // weight of placing k bombs in this component
+            double[] weight = new double[component.counts.length];
+            for (int k = 0; k < weight.length; k++) {
+                for (int other = 0; other < others.length; other++) {
+                    weight[k] += others[other] * weights[k + other];
+                }
+            }
+            // all ways, in the same scale as this component's ways (each product is scaled on its
+            // own to stay in range)
+            double total = 0;
+            for (int k = 0; k < weight.length; k++) {
+                total += component.counts[k] * weight[k];
+            }
+            component.chances = new double[component.cells.length];
+            for (int j = 0; j < component.cells.length; j++) {
+                double ways = 0;
+                for (int k = 0; k < weight.length; k++) {
+                    ways += component.cellCounts[j][k] * weight[k];
+                }
+                component.chances[j] = ways / total;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * interiorChance(List<Component> components, int interior, int bombsLeft) returns the chance
+     * that a Piece in the interior is a bomb
+     */
+    private static double interiorChance(List<Component> components, int interior,
+            int bombsLeft) {
+        if (interior == 0) {
+            return 0;
+        }
+        double[] all = { 1 };
+        for (Component component : components) {
+            all = convolve(all, component.counts);
+        }
+        double[] weights = interiorWeights(components, interior, bombsLeft);
+        double total = 0;
+        double bombs = 0;
+        for (int k = 0; k < all.length; k++) {
+            total += all[k] * weights[k];
+            bombs += all[k] * weights[k] * Math.max(0, bombsLeft - k) / interior;
+        }
+        return total == 0 ? 0 : bombs / total;
+    }
+
+    /**
+     * interiorWeights(List<Component> components, int interior, int bombsLeft) returns, for each
+     * number k of bombs in the frontier, the number of ways of placing the other bombs in the
+     * interior, all divided by the largest (so they do not overflow)
+     */
+    private static double[] interiorWeights(List<Component> components, int interior,
+            int bombsLeft) {
+        int frontierSize = 0;
+        for (Component component : components) {
+            frontierSize += component.cells.length;
+        }
+        double[] logWeights = new double[frontierSize + 1];
+        double max = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k <= frontierSize; k++) {
+            int rest = bombsLeft - k;
+            logWeights[k] = rest < 0 || rest > interior ? Double.NEGATIVE_INFINITY
+                    : logChoose(interior, rest);
+            max = Math.max(max, logWeights[k]);
+        }
+        double[] weights = new double[frontierSize + 1];
+        if (max == Double.NEGATIVE_INFINITY) {
+            return weights;
+        }
+        for (int k = 0; k <= frontierSize; k++) {
+            weights[k] = Math.exp(logWeights[k] - max);
+        }
+        return weights;
+    }
+
+    /**
+     * convolve(double[] a, double[] b) returns the counts of two groups together: entry k is the
+     * number of ways the two hold k bombs between them
+     */
+    private static double[] convolve(double[] a, double[] b) {
+        double[] result = new double[a.length + b.length - 1];
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == 0) {
+                continue;
+            }
+            for (int j = 0; j < b.length; j++) {
+                result[i + j] += a[i] * b[j];
+            }
+        }
+        // keep the largest at 1, so that many components do not overflow
+        double max = 0;
+        for (double value : result) {
+            max = Math.max(max, value);
+        }
+        if (max > 0) {
+            for (int k = 0; k < result.length; k++) {
+                result[k] /= max;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * logChoose(int n, int k) returns the natural log of n choose k
+     */
+    private static double logChoose(int n, int k) {
+        return logFactorial(n) - logFactorial(k) - logFactorial(n - k);
+    }
+
+    // exact values for small n; Stirling's series (accurate to well under 1e-12) above
+    private static final double[] LOG_FACTORIALS = new double[256];
+    static {
+        for (int i = 1; i < LOG_FACTORIALS.length; i++) {
+            LOG_FACTORIALS[i] = LOG_FACTORIALS[i - 1] + Math.log(i);
+        }
+    }
+
+    /**
+     * logFactorial(int n) returns the natural log of n!
+     */
+    private static double logFactorial(int n) {
+        if (n < LOG_FACTORIALS.length) {
+            return LOG_FACTORIALS[n];
+        }
+        double x = n;
+        return x * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI * x) + 1 / (12 * x)
+                - 1 / (360 * x * x * x);
+    }
+
+    /**
+     * leastLikely(double[] probabilities) returns the hidden Piece least likely to be a bomb (the
+     * first one, if several are equally likely)
+     *
+     * @param double[] probabilities: the chances, from probabilities()
+     * @return int cell: the Piece (as row * numCols + col), or -1 if there are no hidden Pieces
+     */
+    public int leastLikely(double[] probabilities) {
+        int numCols = engine.getNumCols();
+        int best = -1;
+        for (int cell = 0; cell < probabilities.length; cell++) {
+            int row = cell / numCols;
+            int col = cell % numCols;
+            if (!engine.isRevealed(row, col) && !engine.isFlagged(row, col)
+                    && (best == -1 || probabilities[cell] < probabilities[best])) {
+                best = cell;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,686 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Replay
+ *
+ * The moves of one game, as recorded by Board into a small binary file: the board (level, size,
+ * seed, and the Piece the bombs were placed around in no guessing mode), then for each batch of
+ * moves made together (see Board.applyBatch()) the milliseconds since the last batch, the number
+ * of moves, and each move's Piece and action, all as varints (7 bits per byte, low bits first,
+ * with the top bit set on every byte but the last), so most single moves take 3 to 5 bytes. A
+ * batch is played back as one batch. A won game on a level with high scores ends with the name it
+ * was recorded under.
+ *
+ * Files are written by a background thread, so recording never waits for the disk. A folder keeps
+ * the newest MAX_REPLAYS games ("game-" files) and the newest MAX_REPLAYS won games recorded with
+ * a name ("win-" files); older ones are deleted as new ones are started.
+ *
+ * A replay can be played on an engine at full speed with nothing drawn (play()), or shown on a
+ * Board at any speed (see Board.play()). verify() plays every replay in a folder to check that each
+ * game in the leaderboard was really won in the time recorded: "java Replay verify".
+ */
+public class Replay {
+    // file layout: MAGIC, VERSION, level (byte), rows, columns, bombs (varints), seed (long),
+    // start + 1 (varint, 0 if the bombs were placed on the first reveal), then the batches, each
+    // the time since the last one, its size, and its moves (varints)
+    private static final int MAGIC = 0x4d535250;
+    private static final byte VERSION = 2;
+
+    // actions, stored in the low bits of a move, with the Piece above them as in the engine's
+    // moves (see MinesweeperEngine.move())
+    public static final int REVEAL = MinesweeperEngine.REVEAL;
+    public static final int FLAG = MinesweeperEngine.FLAG;
+    public static final int CHORD = MinesweeperEngine.CHORD;
+    private static final int ACTION_BITS = MinesweeperEngine.ACTION_BITS;
+
+    // the low bit of a batch's size is set for the name (then the size above it is the number of
+    // bytes of the name that follow) instead of moves
+    private static final int NAME = 1;
+
+    private static final int BUFFER_SIZE = 4096;
+
+    public static final int MAX_REPLAYS = 1000;
+
+    // writes every replay file, in the order the recorders hand it work; see writer()
+    private static ExecutorService writer;
+
+    private final char level;
+    private final int numRows;
+    private final int numCols;
+    private final int numBombs;
+    private final long seed;
+    private final int start;
+    private final String name;
+
+    // each move's time (milliseconds since the first move, from the engine's clock), the move
+    // (made by MinesweeperEngine.move()), and the index of the first move of each batch
+    private final long[] times;
+    private final int[] moves;
+    private final int[] batches;
+
+    private Replay(char level, int numRows, int numCols, int numBombs, long seed, int start,
+            String name, long[] times, int[] moves, int[] batches) {
+        this.level = level;
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.numBombs = numBombs;
+        this.seed = seed;
+        this.start = start;
+        this.name = name;
+        this.times = times;
+        this.moves = moves;
+        this.batches = batches;
+    }
+
+    /**
+     * Recorder
+     *
+     * Writes the moves of a game to a replay file as they are made, through a buffer that is only
+     * handed to the writer thread when it fills up and when the recorder is closed. If the file
+     * cannot be written, the error is printed and the rest of the game is not recorded.
+     */
+    public static class Recorder implements Closeable {
+        private final File file;
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private long lastTime;
+        private boolean named;
+
+        // only used by the writer thread
+        private FileChannel channel;
+        private boolean failed;
+
+        private Recorder(File file) {
+            this.file = file;
+        }
+
+        /**
+         * move(long time, int cell, int action) records a move made on its own
+         *
+         * @param long time: milliseconds since the first move
+         * @param int cell: the Piece (as row * numCols + col)
+         * @param int action: REVEAL, FLAG or CHORD
+         */
+        public void move(long time, int cell, int action) {
+            room(20);
+            putVarint(buffer, time - lastTime);
+            putVarint(buffer, 1 << 1);
+            putVarint(buffer, (long) cell << ACTION_BITS | action);
+            lastTime = time;
+        }
+
+        /**
+         * batch(long time, int[] moves, int from, int to) records the moves from index from up to
+         * (not including) index to, made together, to be played back as one batch
+         *
+         * @param long time: milliseconds since the first move
+         * @param int[] moves: the moves, made with MinesweeperEngine.move()
+         * @param int from: the index of the first move
+         * @param int to: the index after the last move
+         */
+        public void batch(long time, int[] moves, int from, int to) {
+            room(20);
+            putVarint(buffer, time - lastTime);
+            putVarint(buffer, (long) (to - from) << 1);
+            for (int m = from; m < to; m++) {
+                room(5);
+                putVarint(buffer, moves[m]);
+            }
+            lastTime = time;
+        }
+
+        /**
+         * name(String name) records the name a won game's score was recorded under; to be called
+         * once, after the last move
+         *
+         * @param String name: the player's name
+         */
+        public void name(String name) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            room(20 + bytes.length);
+            putVarint(buffer, 0);
+            putVarint(buffer, (long) bytes.length << 1 | NAME);
+            if (buffer.remaining() < bytes.length) {
+                flush();
+                write(ByteBuffer.wrap(bytes));
+            } else {
+                buffer.put(bytes);
+            }
+            named = true;
+        }
+
+        /**
+         * close() hands what is left in the buffer to the writer thread, which then closes the
+         * file (renaming it to a "win-" file if a name was recorded); see finishWrites()
+         */
+        public void close() {
+            flush();
+            final boolean won = named;
+            writer().execute(new Runnable() {
+                public void run() {
+                    if (channel == null) {
+                        return;
+                    }
+                    try {
+                        channel.close();
+                        if (won && !failed) {
+                            File directory = file.getParentFile();
+                            Files.move(file.toPath(), new File(directory,
+                                    file.getName().replaceFirst("^game-", "win-")).toPath(),
+                                    StandardCopyOption.ATOMIC_MOVE);
+                            rotate(directory, "win-");
+                        }
+                    } catch (IOException e) {
+                        System.out.println("error while recording game: " + e.getMessage());
+                    }
+                }
+            });
+        }
+
+        /**
+         * open() creates the file (and its folder), and deletes the oldest games in the folder if
+         * there are more than MAX_REPLAYS; run by the writer thread
+         */
+        private void open() {
+            try {
+                Files.createDirectories(file.getParentFile().toPath());
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE_NEW);
+                rotate(file.getParentFile(), "game-");
+            } catch (IOException e) {
+                System.out.println("error while recording game: " + e.getMessage());
+                failed = true;
+            }
+        }
+
+        /**
+         * room(int bytes) makes sure the buffer has room for the given number of bytes, handing it
+         * to the writer thread if needed
+         */
+        private void room(int bytes) {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        /**
+         * flush() hands the buffer to the writer thread, and starts a new one
+         */
+        private void flush() {
+            if (buffer.position() == 0) {
+                return;
+            }
+            buffer.flip();
+            write(buffer);
+            buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+
+        /**
+         * write(ByteBuffer bytes) has the writer thread write the given bytes to the file; after
+         * an error, nothing more is written
+         */
+        private void write(final ByteBuffer bytes) {
+            writer().execute(new Runnable() {
+                public void run() {
+                    if (failed) {
+                        return;
+                    }
+                    try {
+                        while (bytes.hasRemaining()) {
+                            channel.write(bytes);
+                        }
+                    } catch (IOException e) {
+                        System.out.println("error while recording game: " + e.getMessage());
+                        failed = true;
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * record(File directory, char level, MinesweeperEngine engine, int start) starts recording the
+     * engine's current game in a new file in the given folder (created if needed, by the writer
+     * thread)
+     *
+     * @param File directory: the folder for replay files
+     * @param char level: the game's level
+     * @param MinesweeperEngine engine: the game, before its bombs are placed
+     * @param int start: the Piece the bombs are placed around before the first move, or -1
+     * @return Recorder recorder: the recorder for the game's moves
+     */
+    public static Recorder record(File directory, char level, MinesweeperEngine engine,
+            int start) {
+        // the time comes first, so that the names sort from oldest to newest
+        final Recorder recorder = new Recorder(new File(directory, "game-"
+                + System.currentTimeMillis() + "-" + Long.toHexString(engine.getSeed())
+                + ".replay"));
+        writer().execute(new Runnable() {
+            public void run() {
+                recorder.open();
+            }
+        });
+        ByteBuffer header = recorder.buffer;
+        header.putInt(MAGIC);
+        header.put(VERSION);
+        header.put((byte) level);
+        putVarint(header, engine.getNumRows());
+        putVarint(header, engine.getNumCols());
+        putVarint(header, engine.getNumBombs());
+        header.putLong(engine.getSeed());
+        putVarint(header, start + 1);
+        return recorder;
+    }
+
+    /**
+     * writer() returns the thread that writes replay files, starting it the first time (it is
+     * waited for when the program exits)
+     */
+    private static synchronized ExecutorService writer() {
+        if (writer == null) {
+            writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "replay writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                public void run() {
+                    finishWrites();
+                }
+            });
+        }
+        return writer;
+    }
+
+    /**
+     * finishWrites() waits until everything recorded so far (by closed or open recorders) has
+     * been written
+     */
+    public static void finishWrites() {
+        try {
+            writer().submit(new Runnable() {
+                public void run() {
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.out.println("error while recording game: " + e.getMessage());
+        }
+    }
+
+    /**
+     * rotate(File directory, String prefix) deletes the oldest replays whose names start with the
+     * given prefix, leaving MAX_REPLAYS
+     */
+    private static void rotate(File directory, String prefix) {
+        String[] names = directory.list();
+        if (names == null) {
+            return;
+        }
+        List<String> replays = new ArrayList<String>();
+        for (String name : names) {
+            if (name.startsWith(prefix) && name.endsWith(".replay")) {
+                replays.add(name);
+            }
+        }
+        Collections.sort(replays);
+        for (int i = 0; i < replays.size() - MAX_REPLAYS; i++) {
+            new File(directory, replays.get(i)).delete();
+        }
+    }
+
+    /**
+     * read(File file) reads a replay file
+     *
+     * @param File file: the replay file
+     * @return Replay replay: the game in the file
+     */
+    public static Replay read(File file) throws IOException {
+        return read(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+    }
+
+    /**
+     * read(ByteBuffer in) reads a replay from the given bytes
+     *
+     * @param ByteBuffer in: the bytes of a replay file
+     * @return Replay replay: the game in the bytes
+     */
+    public static Replay read(ByteBuffer in) throws IOException {
+        try {
+            if (in.getInt() != MAGIC || in.get() != VERSION) {
+                throw new IOException("not a replay file");
+            }
+            char level = (char) in.get();
+            int numRows = getInt(in);
+            int numCols = getInt(in);
+            int numBombs = getInt(in);
+            long seed = in.getLong();
+            int start = getInt(in) - 1;
+
+            // most moves take 2 to 5 bytes
+            int capacity = Math.max(16, in.remaining() / 3);
+            long[] times = new long[capacity];
+            int[] moves = new int[capacity];
+            int[] batches = new int[capacity];
+            int n = 0;
+            int numBatches = 0;
+            long time = 0;
+            String name = null;
+            while (in.hasRemaining()) {
+                time += getVarint(in);
+                long size = getVarint(in);
+                if ((size & NAME) != 0) {
+                    byte[] bytes = new byte[(int) Math.min(size >>> 1, in.remaining())];
+                    in.get(bytes);
+                    name = new String(bytes, StandardCharsets.UTF_8);
+                    continue;
+                }
+                long count = size >>> 1;
+                if (count > in.remaining()) {
+                    throw new IOException("bad batch in replay file");
+                }
+                if (count == 0) {
+                    continue;
+                }
+                if (numBatches == batches.length) {
+                    batches = Arrays.copyOf(batches, numBatches * 2);
+                }
+                batches[numBatches++] = n;
+                for (long k = 0; k < count; k++) {
+                    long move = getVarint(in);
+                    if (move > Integer.MAX_VALUE) {
+                        throw new IOException("bad move in replay file");
+                    }
+                    if (n == times.length) {
+                        times = Arrays.copyOf(times, n * 2);
+                        moves = Arrays.copyOf(moves, n * 2);
+                    }
+                    times[n] = time;
+                    moves[n] = (int) move;
+                    n++;
+                }
+            }
+            return new Replay(level, numRows, numCols, numBombs, seed, start, name,
+                    Arrays.copyOf(times, n), Arrays.copyOf(moves, n),
+                    Arrays.copyOf(batches, numBatches));
+        } catch (BufferUnderflowException e) {
+            throw new IOException("replay file ends too early");
+        }
+    }
+
+    /**
+     * begin(MinesweeperEngine engine) starts the replay's game on the given engine, with no moves
+     * made yet
+     *
+     * @param MinesweeperEngine engine: the engine to play on
+     */
+    public void begin(MinesweeperEngine engine) {
+        engine.reset(numRows, numCols, numBombs, seed);
+        if (start >= 0 && start < numRows * numCols) {
+            engine.placeBombs(start / numCols, start % numCols);
+        }
+    }
+
+    /**
+     * batchEnd(int move) returns the index after the last move of the batch the given move was
+     * recorded in
+     *
+     * @param int move: the index of a move
+     * @return int end: the index of the first move of the next batch
+     */
+    public int batchEnd(int move) {
+        int batch = Arrays.binarySearch(batches, move);
+        if (batch < 0) {
+            batch = -batch - 2;
+        }
+        return batch + 1 < batches.length ? batches[batch + 1] : moves.length;
+    }
+
+    /**
+     * play(MinesweeperEngine engine) plays the whole replay on the given engine as fast as it can,
+     * with nothing drawn
+     *
+     * @param MinesweeperEngine engine: the engine to play on
+     * @return Status status: how the game ended, or null if a move was not allowed
+     */
+    public MinesweeperEngine.Status play(MinesweeperEngine engine) {
+        begin(engine);
+        for (int move = 0; move < moves.length; move = batchEnd(move)) {
+            if (engine.applyBatch(moves, move, batchEnd(move)) == 0) {
+                return null;
+            }
+        }
+        return engine.status();
+    }
+
+    /**
+     * Verification
+     *
+     * What verify() found: how many replays it read and how many were real wins, and the games in
+     * the leaderboard with no replay that wins them in the time recorded
+     */
+    public static class Verification {
+        public int replays;
+        public int wins;
+        public int verified;
+        public final List<Leaderboard.Entry> unverified = new ArrayList<Leaderboard.Entry>();
+    }
+
+    /**
+     * verify(Leaderboard scores, File directory) checks every game in the leaderboard against the
+     * replays in the given folder. A game is verified by a replay with the same level and name
+     * that is a real game on that level's board, ends in a win, and took the same number of
+     * seconds; each replay verifies one game at most.
+     *
+     * @param Leaderboard scores: the games to check
+     * @param File directory: the folder of replay files
+     * @return Verification verification: what was found
+     */
+    public static Verification verify(Leaderboard scores, File directory) {
+        Verification verification = new Verification();
+        MinesweeperEngine engine = new MinesweeperEngine(1, 0, 0L);
+
+        // count the winning replays by level, name and seconds
+        Map<String, Integer> wins = new HashMap<String, Integer>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.getName().endsWith(".replay")) {
+                    continue;
+                }
+                verification.replays++;
+                try {
+                    Replay replay = read(file);
+                    int[] size = Board.levelSize(replay.level);
+                    if (replay.name == null || size == null || size[0] != replay.numRows
+                            || size[1] != replay.numCols || size[2] != replay.numBombs
+                            || replay.play(engine) != MinesweeperEngine.Status.WON) {
+                        continue;
+                    }
+                    verification.wins++;
+                    String key = key(replay.level, replay.name, replay.seconds());
+                    Integer count = wins.get(key);
+                    wins.put(key, count == null ? 1 : count + 1);
+                } catch (IOException e) {
+                    System.out.println("error while reading replay " + file.getName() + ": "
+                            + e.getMessage());
+                }
+            }
+        }
+
+        for (char level : new char[] { 'B', 'I', 'E' }) {
+            for (Leaderboard.Entry entry : scores.top(level, scores.size(level))) {
+                String key = key(entry.level, entry.name, entry.seconds);
+                Integer count = wins.get(key);
+                if (count == null) {
+                    verification.unverified.add(entry);
+                } else {
+                    verification.verified++;
+                    wins.put(key, count - 1);
+                    if (count == 1) {
+                        wins.remove(key);
+                    }
+                }
+            }
+        }
+        return verification;
+    }
+
+    /**
+     * key(char level, String name, int seconds) returns the key a won game is matched on
+     */
+    private static String key(char level, String name, int seconds) {
+        return level + "\n" + seconds + "\n" + name;
+    }
+
+    /**
+     * getLevel() returns the level the game was played on
+     *
+     * @return char level: B, I, E, or C for a custom board
+     */
+    public char getLevel() {
+        return level;
+    }
+
+    /**
+     * getName() returns the name a won game was recorded under
+     *
+     * @return String name: the name, or null if none was recorded
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * numMoves() returns the number of moves in the replay
+     *
+     * @return int moves: the number of moves
+     */
+    public int numMoves() {
+        return moves.length;
+    }
+
+    /**
+     * getMoves() returns the moves (made by MinesweeperEngine.move()); the array is the replay's
+     * own, and must not be changed
+     *
+     * @return int[] moves: the moves
+     */
+    public int[] getMoves() {
+        return moves;
+    }
+
+    /**
+     * time(int move) returns the time of a move
+     *
+     * @param int move: the index of the move
+     * @return long time: milliseconds since the first move
+     */
+    public long time(int move) {
+        return times[move];
+    }
+
+    /**
+     * seconds() returns the number of whole seconds from the first move to the last, as the
+     * engine counts them for scores
+     *
+     * @return int seconds: the length of the game
+     */
+    public int seconds() {
+        return moves.length == 0 ? 0 : (int) (times[moves.length - 1] / 1000);
+    }
+
+    /**
+     * putVarint(ByteBuffer out, long value) writes a non-negative number as a varint
+     */
+    private static void putVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.put((byte) (value & 0x7f | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * getVarint(ByteBuffer in) reads a varint
+     */
+    private static long getVarint(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("bad number in replay file");
+    }
+
+    /**
+     * getInt(ByteBuffer in) reads a varint that must fit in a non-negative int
+     */
+    private static int getInt(ByteBuffer in) throws IOException {
+        long value = getVarint(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("bad number in replay file");
+        }
+        return (int) value;
+    }
+
+    /**
+     * main(String[] args) checks the high scores against the recorded games ("java Replay verify
+     * [replay folder] [high scores file]"), or plays one replay and prints how it ended ("java
+     * Replay play file")
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 2 && args[0].equals("play")) {
+            Replay replay = read(new File(args[1]));
+            long begin = System.nanoTime();
+            MinesweeperEngine.Status status = replay.play(new MinesweeperEngine(1, 0, 0L));
+            long nanos = System.nanoTime() - begin;
+            System.out.println((status == null ? "not a real game" : status.toString())
+                    + " on level " + replay.level + " in " + replay.seconds() + " seconds, "
+                    + replay.numMoves() + " moves (played in " + nanos / 1000 + " us)");
+        } else if (args.length >= 1 && args[0].equals("verify")) {
+            File directory = new File(args.length > 1 ? args[1] : Board.REPLAY_DIRECTORY);
+            Leaderboard scores = new Leaderboard(args.length > 2 ? args[2] : "highscores.dat");
+            long begin = System.nanoTime();
+            Verification verification = verify(scores, directory);
+            double seconds = (System.nanoTime() - begin) / 1e9;
+            scores.close();
+            System.out.println(verification.replays + " replays (" + verification.wins
+                    + " wins) checked in " + String.format("%.3f", seconds) + " s ("
+                    + Math.round(verification.replays / seconds) + " per second)");
+            System.out.println(verification.verified + " high scores verified, "
+                    + verification.unverified.size() + " not verified:");
+            for (Leaderboard.Entry entry : verification.unverified) {
+                System.out.println("  " + entry.level + " " + entry.name + ": " + entry.seconds
+                        + " seconds");
+            }
+        } else {
+            System.out.println("usage: java Replay verify [replay folder] [high scores file]");
+            System.out.println("       java Replay play file");
+        }
+    }
+}
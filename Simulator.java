@@ -0,0 +1,232 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Simulator
+ *
+ * Plays many games at each level with a bot and reports how often it wins, how many moves and
+ * revealed Pieces a game takes on average, and how many games were played per second. Games are
+ * split across all cores; each thread has its own engine, bot state and random numbers, and the
+ * threads' results are only added up at the end. Game i's bombs and guesses come from the seed and
+ * i alone, so the results do not depend on the number of threads.
+ *
+ * Usage: java Simulator [games per level] [random|solver|probability] [levels, e.g. BIE] [seed]
+ */
+public class Simulator {
+    /**
+     * Bot
+     *
+     * How the simulated player chooses moves: RANDOM reveals random hidden Pieces; SOLVER plays
+     * the Solver's hints and guesses at random when there are none; PROBABILITY plays the hints
+     * and guesses the Piece least likely to be a bomb (see ProbabilityEngine)
+     */
+    public enum Bot { RANDOM, SOLVER, PROBABILITY }
+
+    /**
+     * Result
+     *
+     * Totals for the games played at one level
+     */
+    public static class Result {
+        public final char level;
+        public long games;
+        public long wins;
+        public long moves;
+        public long revealed;
+        public long nanos;
+
+        Result(char level) {
+            this.level = level;
+        }
+
+        /**
+         * add(Result other) adds another thread's totals to these
+         */
+        void add(Result other) {
+            games += other.games;
+            wins += other.wins;
+            moves += other.moves;
+            revealed += other.revealed;
+        }
+
+        /**
+         * winRate() returns the fraction of games won
+         *
+         * @return double winRate: between 0 and 1
+         */
+        public double winRate() {
+            return games == 0 ? 0 : (double) wins / games;
+        }
+
+        /**
+         * gamesPerSecond() returns the number of games played per second of wall time
+         *
+         * @return double gamesPerSecond: the games played per second
+         */
+        public double gamesPerSecond() {
+            return nanos == 0 ? 0 : games * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%c: %d games, %.2f%% won, %.1f moves and %.1f Pieces revealed "
+                    + "per game, %.0f games/s", level, games, 100 * winRate(),
+                    (double) moves / Math.max(1, games), (double) revealed / Math.max(1, games),
+                    gamesPerSecond());
+        }
+    }
+
+    /**
+     * simulate(char level, int games, Bot bot, int threads, long seed) plays the given number of
+     * games at a level and returns the totals
+     *
+     * @param char level: the level (B, I or E)
+     * @param int games: the number of games
+     * @param Bot bot: how moves are chosen
+     * @param int threads: the number of threads to play on
+     * @param long seed: the seed all of the games' bombs and guesses come from
+     * @return Result result: the totals
+     */
+    public static Result simulate(final char level, final int games, final Bot bot, int threads,
+            final long seed) {
+        final int[] size = Board.levelSize(level);
+        if (size == null) {
+            throw new IllegalArgumentException("unknown level: " + level);
+        }
+
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Result>> futures = new ArrayList<Future<Result>>();
+        for (int t = 0; t < threads; t++) {
+            // thread t plays games t, t + threads, t + 2 * threads, ...
+            final int first = t;
+            final int step = threads;
+            futures.add(executor.submit(new Callable<Result>() {
+                public Result call() {
+                    return play(level, size, first, step, games, bot, seed);
+                }
+            }));
+        }
+
+        Result total = new Result(level);
+        try {
+            for (Future<Result> future : futures) {
+                total.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        total.nanos = System.nanoTime() - start;
+        return total;
+    }
+
+    /**
+     * play(...) plays games first, first + step, ... (up to games) on one thread
+     */
+    private static Result play(char level, int[] size, int first, int step, int games, Bot bot,
+            long seed) {
+        int numRows = size[0];
+        int numCols = size[1];
+        MinesweeperEngine engine = new MinesweeperEngine(numRows, numCols, size[2], seed);
+        Solver solver = bot == Bot.RANDOM ? null : new Solver(engine);
+        ProbabilityEngine probabilities = bot == Bot.PROBABILITY
+                ? new ProbabilityEngine(engine) : null;
+        Result result = new Result(level);
+
+        for (int game = first; game < games; game += step) {
+            SplittableRandom random = new SplittableRandom(seed + game * 0x9e3779b97f4a7c15L);
+            engine.reset(numRows, numCols, size[2], random.nextLong());
+            if (solver != null) {
+                solver.reset();
+            }
+
+            while (engine.status() == MinesweeperEngine.Status.PLAYING) {
+                int cell = solver == null ? -1 : solver.hint();
+                if (cell != -1 && solver.isBomb(cell)) {
+                    engine.toggleFlag(cell / numCols, cell % numCols);
+                    solver.flagged(cell);
+                    continue;
+                }
+                if (cell == -1 && probabilities != null && engine.numRevealed() > 0) {
+                    cell = probabilities.leastLikely();
+                }
+                if (cell == -1) {
+                    cell = randomHidden(engine, random);
+                }
+                int n = engine.reveal(cell / numCols, cell % numCols);
+                if (solver != null) {
+                    solver.revealed(engine.getRevealedCells(), n);
+                }
+                result.moves++;
+            }
+
+            result.games++;
+            if (engine.status() == MinesweeperEngine.Status.WON) {
+                result.wins++;
+            }
+            result.revealed += engine.numRevealed();
+        }
+        return result;
+    }
+
+    /**
+     * randomHidden(MinesweeperEngine engine, SplittableRandom random) returns a random Piece that
+     * is neither revealed nor flagged
+     */
+    private static int randomHidden(MinesweeperEngine engine, SplittableRandom random) {
+        int numCols = engine.getNumCols();
+        int numCells = engine.getNumRows() * numCols;
+        while (true) {
+            int cell = random.nextInt(numCells);
+            if (!engine.isRevealed(cell / numCols, cell % numCols)
+                    && !engine.isFlagged(cell / numCols, cell % numCols)) {
+                return cell;
+            }
+        }
+    }
+
+    /**
+     * Runs the simulation from the command line and prints a line of results for each level
+     */
+    public static void main(String[] args) {
+        int games = 100000;
+        Bot bot = Bot.SOLVER;
+        String levels = "BIE";
+        long seed = System.nanoTime();
+        try {
+            if (args.length > 0) {
+                games = Integer.parseInt(args[0]);
+            }
+            if (args.length > 1) {
+                bot = Bot.valueOf(args[1].toUpperCase());
+            }
+            if (args.length > 2) {
+                levels = args[2].toUpperCase();
+            }
+            if (args.length > 3) {
+                seed = Long.parseLong(args[3]);
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("usage: java Simulator [games per level] "
+                    + "[random|solver|probability] [levels, e.g. BIE] [seed]");
+            return;
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        System.out.println("playing " + games + " games per level with the " + bot.name()
+                .toLowerCase() + " bot on " + threads + " threads (seed " + seed + ")");
+        for (int i = 0; i < levels.length(); i++) {
+            System.out.println(simulate(levels.charAt(i), games, bot, threads, seed));
+        }
+    }
+}
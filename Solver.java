@@ -0,0 +1,361 @@
+import java.util.Arrays;
+
+/**
+ * Solver
+ *
+ * Finds Pieces that must be safe or must be bombs from what the player can see: the numbers on
+ * revealed Pieces and the flags. Each revealed number is a constraint (its hidden, unflagged
+ * neighbors hold exactly its number minus its flagged neighbors bombs), and two rules are used:
+ * a constraint that needs no more bombs, or as many as it has hidden neighbors, decides all of
+ * them; and if one constraint's hidden neighbors are a subset of another's, the difference holds
+ * the difference of their bombs. The neighbors are compared as bitsets of a 7 by 7 window.
+ *
+ * The solver is incremental: after each move the Board tells it which Pieces changed, and only the
+ * constraints next to those are checked again, so finding a hint costs about the same on any size
+ * of board. Flags are trusted, so a wrong flag can lead to a wrong hint.
+ */
+public class Solver {
+    private final MinesweeperEngine engine;
+    private int numRows;
+    private int numCols;
+
+    // revealed cells whose constraints need to be checked, as a stack and a bitset (so that no
+    // cell is on the stack twice)
+    private int[] work;
+    private int workSize;
+    private long[] dirty;
+    // number of words of known, bombs and dirty in use (the rest are always 0)
+    private int words;
+    private static final int INITIAL_WORK = 256;
+
+    // after a change too big to list, every cell from scanFrom on is checked as well
+    private int scanFrom;
+
+    // cells found to be safe or bombs, the ones of those that are bombs, and a stack of the ones
+    // not yet given as hints
+    private long[] known;
+    private long[] bombs;
+    private int[] found;
+    private int foundSize;
+
+    // neighbors within the 7 by 7 window around a constraint are bit (row + 3) * 7 + (col + 3)
+    private static final int WINDOW = 7;
+    private static final int CENTER = 3;
+
+    // a change to a cell only affects what is found up to FORGET rows or columns away: through a
+    // constraint next to it, and another constraint within two of that one
+    private static final int FORGET = 4;
+
+    /**
+     * constructor makes a solver for the given engine's current game
+     *
+     * @param MinesweeperEngine engine: the game to solve
+     */
+    public Solver(MinesweeperEngine engine) {
+        this.engine = engine;
+        reset();
+        // anything already revealed (for example in a game in progress) is found by a scan
+        scanFrom = 0;
+    }
+
+    /**
+     * reset() forgets everything found so far; to be called when the engine starts a new game,
+     * before its first move. Like the engine, it clears and reuses its arrays unless the new
+     * board needs bigger ones.
+     */
+    public void reset() {
+        numRows = engine.getNumRows();
+        numCols = engine.getNumCols();
+        int words = (int) (((long) numRows * numCols + 63) >>> 6);
+        if (known == null || known.length < words) {
+            known = new long[words];
+            bombs = new long[words];
+            dirty = new long[words];
+        } else {
+            Arrays.fill(known, 0, this.words, 0L);
+            Arrays.fill(bombs, 0, this.words, 0L);
+            Arrays.fill(dirty, 0, this.words, 0L);
+        }
+        this.words = words;
+        // the stacks keep whatever size they have grown to
+        if (work == null) {
+            work = new int[INITIAL_WORK];
+            found = new int[INITIAL_WORK];
+        }
+        workSize = 0;
+        foundSize = 0;
+        // nothing is revealed yet, so there is nothing to scan
+        scanFrom = numRows * numCols;
+    }
+
+    /**
+     * revealed(int[] cells, int n) tells the solver that the given cells were revealed, as
+     * returned by the engine's reveal() and getRevealedCells()
+     *
+     * @param int[] cells: the revealed cells (as row * numCols + col), or null if too many were
+     *        revealed to list (then the numbers around them, from the engine's
+     *        getBoundaryCells(), are checked instead)
+     * @param int n: the number of cells revealed
+     */
+    public void revealed(int[] cells, int n) {
+        if (cells == null) {
+            cells = engine.getBoundaryCells();
+            n = engine.getNumBoundaryCells();
+            if (cells == null) {
+                // too many of those to list as well
+                scanFrom = 0;
+                return;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            changed(cells[i], 1);
+        }
+    }
+
+    /**
+     * flagged(int cell) tells the solver that the given cell was flagged or unflagged
+     *
+     * @param int cell: the cell (as row * numCols + col)
+     */
+    public void flagged(int cell) {
+        changed(cell, 1);
+    }
+
+    /**
+     * undone(int[] cells, int n) tells the solver that a move was taken back, changing the given
+     * cells, as returned by the engine's undo() and getUndoneCells(). What was found near them may
+     * no longer follow from what can be seen, so it is forgotten, and the constraints that could
+     * find it again are checked again; the rest of what was found is kept.
+     *
+     * @param int[] cells: the changed cells (as row * numCols + col), or null if too many changed
+     *        to list (then everything is found again by a scan)
+     * @param int n: the number of cells changed
+     */
+    public void undone(int[] cells, int n) {
+        if (cells == null) {
+            reset();
+            scanFrom = 0;
+            return;
+        }
+        for (int k = 0; k < n; k++) {
+            int row = cells[k] / numCols;
+            int col = cells[k] % numCols;
+            for (int i = Math.max(0, row - FORGET); i <= Math.min(numRows - 1, row + FORGET); i++) {
+                for (int j = Math.max(0, col - FORGET); j <= Math.min(numCols - 1, col + FORGET);
+                        j++) {
+                    clear(known, i * numCols + j);
+                    clear(bombs, i * numCols + j);
+                }
+            }
+            changed(cells[k], FORGET + 1);
+        }
+    }
+
+    /**
+     * changed(int cell, int distance) marks the constraints of the cells up to the given number of
+     * rows or columns away from the cell to be checked again
+     */
+    private void changed(int cell, int distance) {
+        int row = cell / numCols;
+        int col = cell % numCols;
+        for (int i = Math.max(0, row - distance); i <= Math.min(numRows - 1, row + distance); i++) {
+            for (int j = Math.max(0, col - distance); j <= Math.min(numCols - 1, col + distance);
+                    j++) {
+                int neighbor = i * numCols + j;
+                if (!get(dirty, neighbor) && engine.getNumAdjacent(i, j) > 0) {
+                    set(dirty, neighbor);
+                    if (workSize == work.length) {
+                        work = Arrays.copyOf(work, work.length * 2);
+                    }
+                    work[workSize++] = neighbor;
+                }
+            }
+        }
+    }
+
+    /**
+     * hint() returns a hidden Piece that must be safe, or a bomb that has not been flagged yet;
+     * use isBomb() to tell which
+     *
+     * @return int cell: the Piece (as row * numCols + col), or -1 if there is no Piece that can be
+     *         found without guessing (or the game is over)
+     */
+    public int hint() {
+        if (engine.status() != MinesweeperEngine.Status.PLAYING) {
+            return -1;
+        }
+        int numCells = numRows * numCols;
+        while (true) {
+            // give the latest thing found that the player has not acted on yet
+            while (foundSize > 0) {
+                int cell = found[foundSize - 1];
+                int row = cell / numCols;
+                int col = cell % numCols;
+                // skipping Pieces acted on, and ones forgotten by undone()
+                boolean done = !get(known, cell) || (get(bombs, cell) ? engine.isFlagged(row, col)
+                        : engine.isRevealed(row, col));
+                if (!done) {
+                    return cell;
+                }
+                foundSize--;
+            }
+
+            // otherwise check the next constraint that changed
+            if (workSize > 0) {
+                int cell = work[--workSize];
+                clear(dirty, cell);
+                check(cell);
+            } else if (scanFrom < numCells) {
+                int cell = scanFrom++;
+                if (engine.getNumAdjacent(cell / numCols, cell % numCols) > 0) {
+                    check(cell);
+                }
+            } else {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * isBomb(int cell) returns true if the solver has found that the given Piece is a bomb
+     *
+     * @param int cell: the Piece (as row * numCols + col)
+     * @return boolean bomb: true if the Piece must be a bomb
+     */
+    public boolean isBomb(int cell) {
+        return get(known, cell) && get(bombs, cell);
+    }
+
+    /**
+     * check(int cell) applies both rules to the constraint of a revealed cell and each constraint
+     * near it, adding anything found to the found stack
+     */
+    private void check(int cell) {
+        int row = cell / numCols;
+        int col = cell % numCols;
+        long hidden = hidden(row, col, 0, 0);
+        int needed = needed(row, col);
+        int numHidden = Long.bitCount(hidden);
+        if (hidden == 0 || needed < 0 || needed > numHidden) {
+            return;
+        }
+        if (needed == 0) {
+            deduce(hidden, false, row, col);
+            return;
+        }
+        if (needed == numHidden) {
+            deduce(hidden, true, row, col);
+            return;
+        }
+
+        // only constraints within two Pieces can share hidden neighbors
+        for (int i = Math.max(0, row - 2); i <= Math.min(numRows - 1, row + 2); i++) {
+            for (int j = Math.max(0, col - 2); j <= Math.min(numCols - 1, col + 2); j++) {
+                if ((i == row && j == col) || engine.getNumAdjacent(i, j) <= 0) {
+                    continue;
+                }
+                long other = hidden(i, j, i - row, j - col);
+                if (other == 0 || other == hidden) {
+                    continue;
+                }
+                int otherNeeded = needed(i, j);
+                if ((hidden & ~other) == 0) {
+                    subset(other & ~hidden, otherNeeded - needed, row, col);
+                } else if ((other & ~hidden) == 0) {
+                    subset(hidden & ~other, needed - otherNeeded, row, col);
+                }
+            }
+        }
+    }
+
+    /**
+     * subset(long difference, int differenceNeeded, int row, int col) decides the Pieces in the
+     * difference of two constraints if it needs no bombs or only bombs
+     */
+    private void subset(long difference, int differenceNeeded, int row, int col) {
+        if (differenceNeeded == 0) {
+            deduce(difference, false, row, col);
+        } else if (differenceNeeded == Long.bitCount(difference)) {
+            deduce(difference, true, row, col);
+        }
+    }
+
+    /**
+     * hidden(int row, int col, int rowOffset, int colOffset) returns the hidden, unflagged
+     * neighbors of a Piece as bits of the window around the Piece that is rowOffset rows and
+     * colOffset columns before it
+     */
+    private long hidden(int row, int col, int rowOffset, int colOffset) {
+        long bits = 0;
+        for (int i = -1; i <= 1; i++) {
+            for (int j = -1; j <= 1; j++) {
+                int r = row + i;
+                int c = col + j;
+                if ((i != 0 || j != 0) && r >= 0 && r < numRows && c >= 0 && c < numCols
+                        && !engine.isRevealed(r, c) && !engine.isFlagged(r, c)) {
+                    bits |= 1L << ((rowOffset + i + CENTER) * WINDOW + colOffset + j + CENTER);
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * needed(int row, int col) returns the number of bombs a revealed Piece still needs among its
+     * hidden, unflagged neighbors
+     */
+    private int needed(int row, int col) {
+        int needed = engine.getNumAdjacent(row, col);
+        for (int i = Math.max(0, row - 1); i <= Math.min(numRows - 1, row + 1); i++) {
+            for (int j = Math.max(0, col - 1); j <= Math.min(numCols - 1, col + 1); j++) {
+                if (engine.isFlagged(i, j)) {
+                    needed--;
+                }
+            }
+        }
+        return needed;
+    }
+
+    /**
+     * deduce(long bits, boolean bomb, int row, int col) records the Pieces in the window around
+     * (row, col) as safe or as bombs
+     */
+    private void deduce(long bits, boolean bomb, int row, int col) {
+        while (bits != 0) {
+            int bit = Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+            int cell = (row + bit / WINDOW - CENTER) * numCols + col + bit % WINDOW - CENTER;
+            if (!get(known, cell)) {
+                set(known, cell);
+                if (bomb) {
+                    set(bombs, cell);
+                }
+                if (foundSize == found.length) {
+                    found = Arrays.copyOf(found, found.length * 2);
+                }
+                found[foundSize++] = cell;
+            }
+        }
+    }
+
+    /**
+     * get(long[] bits, int cell) returns the bit for the given cell
+     */
+    private static boolean get(long[] bits, int cell) {
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * set(long[] bits, int cell) sets the bit for the given cell
+     */
+    private static void set(long[] bits, int cell) {
+        bits[cell >>> 6] |= 1L << cell;
+    }
+
+    /**
+     * clear(long[] bits, int cell) clears the bit for the given cell
+     */
+    private static void clear(long[] bits, int cell) {
+        bits[cell >>> 6] &= ~(1L << cell);
+    }
+}
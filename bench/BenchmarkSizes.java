@@ -0,0 +1,27 @@
+/**
+ * BenchmarkSizes
+ *
+ * The board sizes the benchmarks run at: the Beginner, Intermediate and Expert levels (from
+ * Board.levelSize) and a synthetic 1000 by 1000 board with about the Expert density of bombs
+ */
+public class BenchmarkSizes {
+    public static final int SYNTHETIC_SIDE = 1000;
+
+    /**
+     * size(String name) returns the number of rows, columns and bombs for a benchmark size
+     *
+     * @param String name: "B", "I", "E" or "1000"
+     * @return int[] size: the number of rows, columns and bombs
+     */
+    public static int[] size(String name) {
+        if (name.equals(Integer.toString(SYNTHETIC_SIDE))) {
+            int cells = SYNTHETIC_SIDE * SYNTHETIC_SIDE;
+            return new int[] { SYNTHETIC_SIDE, SYNTHETIC_SIDE, cells / 5 };
+        }
+        int[] size = Board.levelSize(name.charAt(0));
+        if (size == null) {
+            throw new IllegalArgumentException("unknown size: " + name);
+        }
+        return size;
+    }
+}
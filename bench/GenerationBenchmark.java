@@ -0,0 +1,63 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * GenerationBenchmark
+ *
+ * Times placing the bombs and counting the adjacent bombs of every Piece (assignBombs) at each
+ * size and at several densities. Each call starts a new game first, so reset() is timed on its own
+ * as a baseline to subtract.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerationBenchmark {
+    @Param({ "B", "I", "E", "1000" })
+    public String size;
+
+    // fraction of the Pieces that are bombs (the level's own number of bombs is not used)
+    @Param({ "0.05", "0.2", "0.5" })
+    public double density;
+
+    private MinesweeperEngine engine;
+    private int numRows;
+    private int numCols;
+    private int numBombs;
+    private long seed;
+
+    @Setup
+    public void setUp() {
+        int[] dimensions = BenchmarkSizes.size(size);
+        numRows = dimensions[0];
+        numCols = dimensions[1];
+        numBombs = (int) (numRows * numCols * density);
+        engine = new MinesweeperEngine(numRows, numCols, numBombs, seed);
+    }
+
+    @Benchmark
+    public MinesweeperEngine reset() {
+        engine.reset(numRows, numCols, numBombs, seed++);
+        return engine;
+    }
+
+    @Benchmark
+    public MinesweeperEngine resetAndAssignBombs() {
+        engine.reset(numRows, numCols, numBombs, seed++);
+        engine.assignBombs((numRows / 2) * numCols + numCols / 2);
+        return engine;
+    }
+}
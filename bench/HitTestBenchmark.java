@@ -0,0 +1,62 @@
+import java.awt.Dimension;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * HitTestBenchmark
+ *
+ * Times finding the Piece under the mouse (Board.cellAt) for points spread over the whole board,
+ * inside and outside the grid
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class HitTestBenchmark {
+    private static final int NUM_POINTS = 1024;
+
+    @Param({ "B", "I", "E", "1000" })
+    public String size;
+
+    private Board board;
+    private int[] xs = new int[NUM_POINTS];
+    private int[] ys = new int[NUM_POINTS];
+
+    @Setup
+    public void setUp() {
+        int[] dimensions = BenchmarkSizes.size(size);
+        board = new Board(dimensions[0], dimensions[1], dimensions[2]);
+        Dimension preferred = board.getPreferredSize();
+        board.setSize(preferred);
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < NUM_POINTS; i++) {
+            xs[i] = random.nextInt(preferred.width);
+            ys[i] = random.nextInt(preferred.height);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_POINTS)
+    public int cellAt() {
+        int sum = 0;
+        for (int i = 0; i < NUM_POINTS; i++) {
+            sum += board.cellAt(xs[i], ys[i]);
+        }
+        return sum;
+    }
+}
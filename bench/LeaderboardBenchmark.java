@@ -0,0 +1,105 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * LeaderboardBenchmark
+ *
+ * Times the high score I/O that highscores() does, now through Leaderboard: recording a win,
+ * reading the top scores and a percentile, opening the file (which rebuilds the indexes), and
+ * reading a high scores text file in the old format. The board sizes do not matter here, so the
+ * size is the number of games already recorded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LeaderboardBenchmark {
+    @Param({ "0", "10000", "1000000" })
+    public int games;
+
+    private File file;
+    private File text;
+    private Leaderboard leaderboard;
+    private int seconds;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("leaderboard", ".dat");
+        file.delete();
+        leaderboard = new Leaderboard(file.getPath());
+        for (int i = 0; i < games; i++) {
+            leaderboard.submit("BIE".charAt(i % 3), "player" + i, (i * 7919) % 1000);
+        }
+        leaderboard.close();
+        leaderboard = new Leaderboard(file.getPath());
+
+        text = File.createTempFile("highscores", ".txt");
+        Writer out = new FileWriter(text);
+        out.write("High Scores\nBeginner\n1. Ann: 7 seconds\n2. Bo: 9 seconds\n3.\n4.\n5.\n"
+                + "Intermediate\n1. Cy: 40 seconds\n2.\n3.\n4.\n5.\n"
+                + "Expert\n1. Di: 200 seconds\n2. Ed: 250 seconds\n3.\n4.\n5.\n");
+        out.close();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        leaderboard.close();
+        file.delete();
+        text.delete();
+    }
+
+    @Benchmark
+    public int add() throws IOException {
+        seconds = (seconds + 7919) % 1000;
+        return leaderboard.add('B', "bench", seconds);
+    }
+
+    @Benchmark
+    public Leaderboard.Entry[] top() {
+        return leaderboard.top('I', Board.NUM_HIGH_SCORES);
+    }
+
+    @Benchmark
+    public int percentile() {
+        seconds = (seconds + 7919) % 1000;
+        return leaderboard.percentile('E', seconds);
+    }
+
+    @Benchmark
+    public int open() throws IOException {
+        Leaderboard opened = new Leaderboard(file.getPath());
+        int size = opened.size();
+        opened.close();
+        return size;
+    }
+
+    @Benchmark
+    public int importText() throws IOException {
+        File imported = File.createTempFile("imported", ".dat");
+        imported.delete();
+        Leaderboard scores = new Leaderboard(imported.getPath());
+        scores.importText(text.getPath());
+        int size = scores.size();
+        scores.close();
+        imported.delete();
+        return size;
+    }
+}
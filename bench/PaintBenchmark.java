@@ -0,0 +1,100 @@
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PaintBenchmark
+ *
+ * Times Board.paintComponent drawing into an offscreen BufferedImage, part way through a game (so
+ * that hidden, revealed and flagged Pieces are all drawn): once for a whole view (the board, or an
+ * 800 by 600 view of the middle of boards bigger than that, as in a scroll pane) and once for the
+ * clip of a single Piece, as repainted after a flag
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PaintBenchmark {
+    private static final int VIEW_WIDTH = 800;
+    private static final int VIEW_HEIGHT = 600;
+
+    @Param({ "B", "I", "E", "1000" })
+    public String size;
+
+    private Board board;
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private int viewX;
+    private int viewY;
+    private int cellX;
+    private int cellY;
+
+    @Setup
+    public void setUp() {
+        int[] dimensions = BenchmarkSizes.size(size);
+        board = new Board(dimensions[0], dimensions[1], dimensions[2]);
+        Dimension preferred = board.getPreferredSize();
+        board.setSize(preferred);
+
+        // reveal and flag some Pieces around the middle
+        MinesweeperEngine engine = board.getEngine();
+        int midRow = dimensions[0] / 2;
+        int midCol = dimensions[1] / 2;
+        engine.reveal(midRow, midCol);
+        for (int i = Math.max(0, midRow - 10); i < Math.min(dimensions[0], midRow + 10); i++) {
+            for (int j = Math.max(0, midCol - 10); j < Math.min(dimensions[1], midCol + 10); j++) {
+                if ((i + j) % 7 == 0) {
+                    engine.toggleFlag(i, j);
+                }
+            }
+        }
+
+        int width = Math.min(preferred.width, VIEW_WIDTH);
+        int height = Math.min(preferred.height, VIEW_HEIGHT);
+        viewX = (preferred.width - width) / 2;
+        viewY = (preferred.height - height) / 2;
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+        graphics.translate(-viewX, -viewY);
+
+        // a Piece-sized area in the middle of the view
+        cellX = viewX + width / 2;
+        cellY = viewY + height / 2;
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paintView() {
+        graphics.setClip(viewX, viewY, image.getWidth(), image.getHeight());
+        board.paintComponent(graphics);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage paintOnePiece() {
+        int piece = board.getCellSize();
+        graphics.setClip(cellX, cellY, piece + 1, piece + 1);
+        board.paintComponent(graphics);
+        return image;
+    }
+}
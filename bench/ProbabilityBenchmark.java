@@ -0,0 +1,59 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ProbabilityBenchmark
+ *
+ * Times the guess that Board.hint() makes on the event thread (ProbabilityEngine.leastLikely())
+ * on an Expert board: after a first click ("opening"), and with a row of numbers along the top
+ * whose hidden neighbors make one component of about 57 Pieces ("dense"), which has too many
+ * placements to count and so shows the cost of stopping at MAX_COUNT_MILLIS.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProbabilityBenchmark {
+    @Param({ "opening", "dense" })
+    public String frontier;
+
+    private ProbabilityEngine probabilities;
+
+    @Setup
+    public void setUp() {
+        int[] size = BenchmarkSizes.size("E");
+        MinesweeperEngine engine = new MinesweeperEngine(size[0], size[1], size[2], 4L);
+        if (frontier.equals("opening")) {
+            engine.reveal(size[0] / 2, size[1] / 2);
+        } else {
+            // every other Piece along the second row, skipping bombs
+            engine.placeBombs(size[0] - 1, size[1] - 1);
+            int shown = 0;
+            for (int col = 1; shown < 11 && col < size[1] - 1; col += 2) {
+                if (!engine.hasBomb(1, col)) {
+                    engine.reveal(1, col);
+                    shown++;
+                }
+            }
+        }
+        probabilities = new ProbabilityEngine(engine);
+    }
+
+    @Benchmark
+    public int leastLikely() {
+        return probabilities.leastLikely();
+    }
+}
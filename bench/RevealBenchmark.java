@@ -0,0 +1,64 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * RevealBenchmark
+ *
+ * Times the flood fill (getNumbers) that reveals a whole open board from one click, and a first
+ * click on a board with the size's own number of bombs. Each call starts a new game first, so
+ * reset() is timed on its own as a baseline to subtract.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RevealBenchmark {
+    @Param({ "B", "I", "E", "1000" })
+    public String size;
+
+    private MinesweeperEngine engine;
+    private int numRows;
+    private int numCols;
+    private int numBombs;
+    private long seed;
+
+    @Setup
+    public void setUp() {
+        int[] dimensions = BenchmarkSizes.size(size);
+        numRows = dimensions[0];
+        numCols = dimensions[1];
+        numBombs = dimensions[2];
+        engine = new MinesweeperEngine(numRows, numCols, 0, seed);
+    }
+
+    @Benchmark
+    public MinesweeperEngine resetOpen() {
+        engine.reset(numRows, numCols, 0, seed++);
+        return engine;
+    }
+
+    @Benchmark
+    public int revealOpen() {
+        engine.reset(numRows, numCols, 0, seed++);
+        return engine.reveal(numRows / 2, numCols / 2);
+    }
+
+    @Benchmark
+    public int revealFirstClick() {
+        engine.reset(numRows, numCols, numBombs, seed++);
+        return engine.reveal(numRows / 2, numCols / 2);
+    }
+}